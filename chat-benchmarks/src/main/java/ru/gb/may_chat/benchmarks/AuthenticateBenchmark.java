@@ -0,0 +1,98 @@
+package ru.gb.may_chat.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.gb.may_chat.server.dao.UserDao;
+import ru.gb.may_chat.server.error.WrongCredentialsException;
+import ru.gb.may_chat.server.service.impl.DbUserServiceImpl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthenticateBenchmark {
+
+    @Param({"100", "10000"})
+    private int users;
+
+    private Path dbFile;
+    private DbUserServiceImpl userService;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException, SQLException {
+        dbFile = Files.createTempFile("chat-bench", ".db");
+        String url = "jdbc:sqlite:" + dbFile;
+        try (Connection connection = DriverManager.getConnection(url)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE user (" +
+                        "id integer primary key autoincrement, " +
+                        "login varchar(255) not null, " +
+                        "password varchar(255) not null, " +
+                        "nick varchar(255) not null)");
+            }
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO user (login, password, nick) VALUES (?, ?, ?)")) {
+                for (int i = 0; i < users; i++) {
+                    insert.setString(1, "login" + i);
+                    insert.setString(2, "pass" + i);
+                    insert.setString(3, "nick" + i);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            connection.commit();
+        }
+        // PropertyReader lets system properties override application.properties
+        System.setProperty("db.url", url);
+        userService = new DbUserServiceImpl(new UserDao());
+        userService.start();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        userService.stop();
+        Files.deleteIfExists(dbFile);
+        Files.deleteIfExists(Path.of(dbFile + "-wal"));
+        Files.deleteIfExists(Path.of(dbFile + "-shm"));
+    }
+
+    @Benchmark
+    public String authenticate() {
+        int i = next++ % users;
+        return userService.authenticate("login" + i, "pass" + i);
+    }
+
+    @Benchmark
+    public Object wrongPassword() {
+        int i = next++ % users;
+        try {
+            return userService.authenticate("login" + i, "wrong");
+        } catch (WrongCredentialsException e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ru.gb.may_chat.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.gb.may_chat.protocol.Frame;
+import ru.gb.may_chat.protocol.ProtocolVersion;
+import ru.gb.may_chat.server.Server;
+import ru.gb.may_chat.server.enums.ServerMode;
+import ru.gb.may_chat.server.room.Room;
+import ru.gb.may_chat.server.room.RoomRegistry;
+import ru.gb.may_chat.server.service.impl.InMemoryUserServiceImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static ru.gb.may_chat.enums.Command.BROADCAST_MESSAGE;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BroadcastFanOutBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int sinks;
+
+    @Param({"TEXT", "BINARY"})
+    private ProtocolVersion protocol;
+
+    private final String text = "[nick1]: " + "x".repeat(64);
+    private List<SinkHandler> handlers;
+    private Room room;
+
+    @Setup
+    public void setUp() {
+        Server server = new Server(new InMemoryUserServiceImpl(), ServerMode.NIO);
+        RoomRegistry rooms = new RoomRegistry(name -> {
+        });
+        handlers = new ArrayList<>(sinks);
+        for (int i = 0; i < sinks; i++) {
+            SinkHandler handler = new SinkHandler(server, protocol);
+            handlers.add(handler);
+            rooms.join("bench", handler);
+        }
+        room = rooms.find("bench").orElseThrow();
+    }
+
+    // Server.broadcast: one frame, encoded once and shared by every recipient
+    @Benchmark
+    public long encodeOnce() {
+        room.send(Frame.of(BROADCAST_MESSAGE, text));
+        return handlers.get(0).getBytes();
+    }
+
+    // the original loop: a fresh message, and so a fresh encoding, per recipient
+    @Benchmark
+    public long encodePerRecipient() {
+        for (SinkHandler handler : handlers) {
+            handler.send(BROADCAST_MESSAGE, text);
+        }
+        return handlers.get(0).getBytes();
+    }
+}
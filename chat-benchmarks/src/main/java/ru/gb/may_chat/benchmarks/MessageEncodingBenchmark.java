@@ -0,0 +1,64 @@
+package ru.gb.may_chat.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.gb.may_chat.enums.Command;
+import ru.gb.may_chat.protocol.Frame;
+import ru.gb.may_chat.protocol.ProtocolVersion;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static ru.gb.may_chat.constants.MessageConstants.REGEX;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageEncodingBenchmark {
+
+    @Param({"16", "256"})
+    private int textLength;
+
+    private String text;
+    private ByteArrayOutputStream buffer;
+    private DataOutputStream out;
+
+    @Setup
+    public void setUp() {
+        text = "[nick1]: " + "x".repeat(textLength);
+        buffer = new ByteArrayOutputStream(1024);
+        out = new DataOutputStream(buffer);
+    }
+
+    // the original Handler.send: string concatenation and writeUTF per recipient
+    @Benchmark
+    public int writeUtf() throws IOException {
+        buffer.reset();
+        out.writeUTF(Command.BROADCAST_MESSAGE.getCommand() + REGEX + text);
+        return buffer.size();
+    }
+
+    @Benchmark
+    public int frameText() {
+        return Frame.of(Command.BROADCAST_MESSAGE, text).size(ProtocolVersion.TEXT);
+    }
+
+    @Benchmark
+    public int frameBinary() {
+        return Frame.of(Command.BROADCAST_MESSAGE, text).size(ProtocolVersion.BINARY);
+    }
+}
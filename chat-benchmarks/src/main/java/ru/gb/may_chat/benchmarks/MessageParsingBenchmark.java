@@ -0,0 +1,76 @@
+package ru.gb.may_chat.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.gb.may_chat.enums.Command;
+import ru.gb.may_chat.protocol.Codec;
+import ru.gb.may_chat.protocol.Message;
+import ru.gb.may_chat.protocol.ProtocolVersion;
+import ru.gb.may_chat.protocol.TextCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static ru.gb.may_chat.constants.MessageConstants.REGEX;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageParsingBenchmark {
+
+    @Param({"16", "256"})
+    private int textLength;
+
+    private String raw;
+    private byte[] textFrame;
+    private byte[] binaryFrame;
+    private Codec textCodec;
+    private Codec binaryCodec;
+
+    @Setup
+    public void setUp() {
+        Message message = Message.of(Command.PRIVATE_MESSAGE, "nick2", "x".repeat(textLength));
+        textCodec = ProtocolVersion.TEXT.getCodec();
+        binaryCodec = ProtocolVersion.BINARY.getCodec();
+        raw = message.getCommand().getCommand() + REGEX + message.getField(0) + REGEX + message.getField(1);
+        textFrame = textCodec.encode(message);
+        binaryFrame = binaryCodec.encode(message);
+    }
+
+    // the original Handler path: regex split and a map lookup of the command prefix
+    @Benchmark
+    public void splitAndLookup(Blackhole bh) {
+        String[] split = raw.split(REGEX);
+        bh.consume(Command.getByCommand(split[0]));
+        bh.consume(split);
+    }
+
+    @Benchmark
+    public Message textParse() throws IOException {
+        return TextCodec.parse(raw);
+    }
+
+    @Benchmark
+    public Message textDecode() throws IOException {
+        return textCodec.decode(ByteBuffer.wrap(textFrame));
+    }
+
+    @Benchmark
+    public Message binaryDecode() throws IOException {
+        return binaryCodec.decode(ByteBuffer.wrap(binaryFrame));
+    }
+}
@@ -0,0 +1,75 @@
+package ru.gb.may_chat.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.gb.may_chat.protocol.ProtocolVersion;
+import ru.gb.may_chat.server.Server;
+import ru.gb.may_chat.server.enums.ServerMode;
+import ru.gb.may_chat.server.presence.PresenceChange;
+import ru.gb.may_chat.server.presence.PresenceTracker;
+import ru.gb.may_chat.server.service.impl.InMemoryUserServiceImpl;
+import ru.gb.may_chat.server.session.SessionRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// TEXT clients get the full LIST_USERS on every change, as the original sendContacts did;
+// BINARY clients get PRESENCE deltas
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PresenceBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int users;
+
+    @Param({"TEXT", "BINARY"})
+    private ProtocolVersion protocol;
+
+    private PresenceTracker tracker;
+    private SinkHandler observer;
+
+    @Setup
+    public void setUp() {
+        Server server = new Server(new InMemoryUserServiceImpl(), ServerMode.NIO);
+        SessionRegistry sessions = new SessionRegistry();
+        tracker = new PresenceTracker(sessions);
+        List<PresenceChange> joined = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            SinkHandler handler = new SinkHandler(server, protocol);
+            sessions.register("nick" + i, handler);
+            joined.add(PresenceChange.joined("nick" + i));
+            if (observer == null) {
+                observer = handler;
+            }
+        }
+        tracker.publish(joined);
+    }
+
+    // one user joining and leaving, fanned out to everyone online
+    @Benchmark
+    public long joinAndLeave() {
+        tracker.publish(List.of(PresenceChange.joined("bench")));
+        tracker.publish(List.of(PresenceChange.left("bench")));
+        return observer.getBytes();
+    }
+
+    @Benchmark
+    public long snapshot() {
+        tracker.sendSnapshot(observer);
+        return observer.getBytes();
+    }
+}
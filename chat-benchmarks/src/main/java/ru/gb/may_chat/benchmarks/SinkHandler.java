@@ -0,0 +1,41 @@
+package ru.gb.may_chat.benchmarks;
+
+import ru.gb.may_chat.protocol.ProtocolVersion;
+import ru.gb.may_chat.server.Handler;
+import ru.gb.may_chat.server.Server;
+import ru.gb.may_chat.server.outbound.QueuedFrame;
+
+// a connection without a socket: flush drains the outbound queue and counts encoded bytes
+class SinkHandler extends Handler {
+    private long bytes;
+
+    SinkHandler(Server server, ProtocolVersion protocol) {
+        super(server);
+        this.protocol = protocol;
+    }
+
+    @Override
+    protected void start() {
+    }
+
+    @Override
+    protected void flush() {
+        QueuedFrame frame;
+        while ((frame = outbound.poll()) != null) {
+            bytes += frame.size();
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public boolean isClosed() {
+        return false;
+    }
+
+    long getBytes() {
+        return bytes;
+    }
+}
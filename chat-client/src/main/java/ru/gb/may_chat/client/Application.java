@@ -6,6 +6,7 @@ import javafx.scene.Scene;
 import javafx.stage.Stage;
 
 public class Application extends javafx.application.Application {
+    private ChatController controller;
 
     public static void run(String[] args) {
         launch(args);
@@ -16,9 +17,17 @@ public class Application extends javafx.application.Application {
         FXMLLoader loader = new FXMLLoader();
         loader.setLocation(this.getClass().getResource("/ChatWindow.fxml"));
         Parent parent = loader.load();
+        controller = loader.getController();
         Scene scene = new Scene(parent);
         primaryStage.setScene(scene);
         primaryStage.setTitle("May chat");
         primaryStage.show();
     }
+
+    @Override
+    public void stop() {
+        if (controller != null) {
+            controller.shutdown();
+        }
+    }
 }
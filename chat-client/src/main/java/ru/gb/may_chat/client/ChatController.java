@@ -1,5 +1,6 @@
 package ru.gb.may_chat.client;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.event.ActionEvent;
@@ -11,38 +12,51 @@ import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
 import javafx.scene.control.ListView;
 import javafx.scene.control.PasswordField;
-import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.VBox;
 import javafx.scene.web.WebEngine;
 import javafx.scene.web.WebView;
 import javafx.stage.Stage;
-import org.apache.commons.io.input.ReversedLinesFileReader;
+import ru.gb.may_chat.client.history.FsyncPolicy;
+import ru.gb.may_chat.client.history.HistoryFile;
+import ru.gb.may_chat.client.history.HistoryWriter;
 import ru.gb.may_chat.client.net.MessageProcessor;
 import ru.gb.may_chat.client.net.NetworkService;
-import ru.gb.may_chat.enums.Command;
+import ru.gb.may_chat.client.view.ChatLine;
+import ru.gb.may_chat.client.view.MessageWindow;
+import ru.gb.may_chat.enums.PresenceEvent;
+import ru.gb.may_chat.props.PropertyReader;
+import ru.gb.may_chat.protocol.Message;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Queue;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
-import static ru.gb.may_chat.constants.MessageConstants.REGEX;
 import static ru.gb.may_chat.enums.Command.AUTH_MESSAGE;
 import static ru.gb.may_chat.enums.Command.BROADCAST_MESSAGE;
 import static ru.gb.may_chat.enums.Command.CHANGE_NICK;
+import static ru.gb.may_chat.enums.Command.JOIN_ROOM;
+import static ru.gb.may_chat.enums.Command.LEAVE_ROOM;
+import static ru.gb.may_chat.enums.Command.PRESENCE_SYNC;
 import static ru.gb.may_chat.enums.Command.PRIVATE_MESSAGE;
+import static ru.gb.may_chat.enums.Command.RESUME;
+import static ru.gb.may_chat.enums.Command.ROOM_MESSAGE;
+import static ru.gb.may_chat.enums.Command.STATS;
 
 public class ChatController implements Initializable, MessageProcessor {
 
     private static final String BROADCAST_CONTACT = "ALL";
-    private static final int LAST_HISTORY_MESSAGES_NUMBER = 100;
+    private static final String ROOM_PREFIX = "#";
+    private static final int HISTORY_PAGE_SIZE = 100;
+    private static final int MAX_MESSAGES_PER_PULSE = 10_000;
 
     @FXML
     private VBox changeNickPanel;
@@ -71,7 +85,7 @@ public class ChatController implements Initializable, MessageProcessor {
     private VBox mainPanel;
 
     @FXML
-    private TextArea chatArea;
+    private ListView<ChatLine> messages;
 
     @FXML
     private ListView<String> contacts;
@@ -86,6 +100,20 @@ public class ChatController implements Initializable, MessageProcessor {
 
     private String user;
     private String historyFileName;
+    private HistoryFile historyFile;
+    private HistoryWriter historyWriter;
+    private MessageWindow messageWindow;
+    private long presenceVersion = -1;
+    private volatile String sessionToken;
+    private volatile boolean resuming;
+    private int replayRemaining;
+    private final List<String> replayed = new ArrayList<>();
+    private final Set<String> joinedRooms = new LinkedHashSet<>();
+
+    private final Queue<Message> inbox = new ConcurrentLinkedQueue<>();
+    private final List<ChatLine> pendingChat = new ArrayList<>();
+    private List<String> pendingContacts;
+    private AnimationTimer inboxDrainer;
 
     public void mockAction(ActionEvent actionEvent) {
         System.out.println("mock");
@@ -95,18 +123,40 @@ public class ChatController implements Initializable, MessageProcessor {
         Platform.exit();
     }
 
+    public void shutdown() {
+        inboxDrainer.stop();
+        closeHistoryWriter();
+        networkService.shutdown();
+    }
+
     public void sendMessage(ActionEvent actionEvent) {
         try {
             String text = inputField.getText();
             if (text == null || text.isBlank()) {
                 return;
             }
+            if (text.trim().equals(STATS.getCommand())) {
+                networkService.sendMessage(Message.of(STATS));
+                inputField.clear();
+                return;
+            }
+            if (text.startsWith(JOIN_ROOM.getCommand() + " ")) {
+                networkService.sendMessage(Message.of(JOIN_ROOM, text.substring(JOIN_ROOM.getCommand().length()).trim()));
+                inputField.clear();
+                return;
+            }
+            if (text.startsWith(LEAVE_ROOM.getCommand() + " ")) {
+                networkService.sendMessage(Message.of(LEAVE_ROOM, text.substring(LEAVE_ROOM.getCommand().length()).trim()));
+                inputField.clear();
+                return;
+            }
             String recipient = contacts.getSelectionModel().getSelectedItem();
             if (recipient.equals(BROADCAST_CONTACT)) {
-                networkService.sendMessage(BROADCAST_MESSAGE.getCommand() + REGEX + text);
+                networkService.sendMessage(Message.of(BROADCAST_MESSAGE, text));
+            } else if (recipient.startsWith(ROOM_PREFIX)) {
+                networkService.sendMessage(Message.of(ROOM_MESSAGE, recipient.substring(ROOM_PREFIX.length()), text));
             } else {
-                networkService.sendMessage(
-                        PRIVATE_MESSAGE.getCommand() + REGEX + recipient + REGEX + text);
+                networkService.sendMessage(Message.of(PRIVATE_MESSAGE, recipient, text));
             }
             inputField.clear();
         } catch (IOException e) {
@@ -144,89 +194,324 @@ public class ChatController implements Initializable, MessageProcessor {
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         networkService = new NetworkService(this);
+        inboxDrainer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                drainInbox();
+            }
+        };
+        inboxDrainer.start();
+        messageWindow = new MessageWindow(
+                messages, PropertyReader.getInstance().getChatViewCapacity(), HISTORY_PAGE_SIZE);
+    }
+
+    @Override
+    public void processMessage(Message message) {
+        inbox.add(message);
+    }
+
+    // dialogs opened while draining must be deferred: showAndWait is not allowed during a pulse
+    private void drainInbox() {
+        Message message;
+        int processed = 0;
+        while (processed++ < MAX_MESSAGES_PER_PULSE && (message = inbox.poll()) != null) {
+            if (message.getCommand().isControl()) {
+                flushChat();
+            }
+            parseMessage(message);
+        }
+        flushChat();
+        commitContacts();
+    }
+
+    private void flushChat() {
+        if (!pendingChat.isEmpty()) {
+            messageWindow.append(pendingChat);
+            pendingChat.clear();
+        }
+    }
+
+    private List<String> editContacts() {
+        if (pendingContacts == null) {
+            pendingContacts = new ArrayList<>(contacts.getItems());
+        }
+        return pendingContacts;
+    }
+
+    private void commitContacts() {
+        if (pendingContacts == null) {
+            return;
+        }
+        String selected = contacts.getSelectionModel().getSelectedItem();
+        contacts.setItems(FXCollections.observableList(pendingContacts));
+        pendingContacts = null;
+        if (selected != null && contacts.getItems().contains(selected)) {
+            contacts.getSelectionModel().select(selected);
+        } else {
+            contacts.getSelectionModel().selectFirst();
+        }
+    }
+
+    private void parseMessage(Message message) {
+        switch (message.getCommand()) {
+            case AUTH_OK -> authOk(message);
+            case ERROR_MESSAGE -> handleError(message.getField(0));
+            case LIST_USERS -> parseUsers(message.getFields());
+            case PRESENCE_SNAPSHOT -> applyPresenceSnapshot(message);
+            case PRESENCE -> applyPresenceDelta(message);
+            case CHANGE_NICK_OK -> handleChangeNick(message);
+            case REPLAY -> startReplay(message);
+            case JOIN_ROOM -> roomJoined(message.getField(0));
+            case LEAVE_ROOM -> roomLeft(message.getField(0));
+            case STATS -> showStats(message);
+            case ROOM_MESSAGE -> {
+                String text = ROOM_PREFIX + message.getField(0) + " " + message.getField(1);
+                if (replayRemaining > 0) {
+                    addReplayed(text);
+                } else {
+                    addChatMessage(text);
+                }
+            }
+            default -> {
+                if (replayRemaining > 0) {
+                    addReplayed(message.getField(0));
+                } else {
+                    addChatMessage(message.getField(0));
+                }
+            }
+        }
     }
 
     @Override
-    public void processMessage(String message) {
-        System.out.println("processing message");
-        Platform.runLater(() -> parseMessage(message));
+    public void onConnectionLost() {
+        if (sessionToken == null) {
+            Platform.runLater(networkService::shutdown);
+            return;
+        }
+        Platform.runLater(() -> messageWindow.append("Connection lost, reconnecting..."));
+        if (networkService.reconnect(PropertyReader.getInstance().getReconnectAttempts())) {
+            try {
+                resuming = true;
+                networkService.sendMessage(Message.of(RESUME, sessionToken));
+                return;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        Platform.runLater(() -> {
+            showError("Connection lost");
+            networkService.shutdown();
+        });
+    }
+
+    private void handleError(String error) {
+        if (resuming) {
+            resuming = false;
+            sessionToken = null;
+            messageWindow.clear();
+            mainPanel.setVisible(false);
+            loginPanel.setVisible(true);
+        }
+        Platform.runLater(() -> showError(error));
+    }
+
+    private void startReplay(Message message) {
+        replayed.clear();
+        replayRemaining = Integer.parseInt(message.getField(0));
+    }
+
+    private void addReplayed(String text) {
+        replayed.add(text);
+        if (--replayRemaining == 0) {
+            finishReplay();
+        }
+    }
+
+    // the local history already holds what this client saw before, so only the tail it missed is added
+    private void finishReplay() {
+        int from = 0;
+        if (historyFile != null) {
+            long lineCount = historyFile.getLineCount();
+            try {
+                Set<String> seen = new HashSet<>(
+                        historyFile.readLines(lineCount - replayed.size() - HISTORY_PAGE_SIZE, lineCount));
+                from = replayed.size();
+                while (from > 0 && !seen.contains(replayed.get(from - 1))) {
+                    from--;
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        for (String text : replayed.subList(from, replayed.size())) {
+            addChatMessage(text);
+        }
+        replayed.clear();
     }
 
-    private void parseMessage(String message) {
-        String[] split = message.split(REGEX);
-        Command command = Command.getByCommand(split[0]);
+    private void showStats(Message message) {
+        for (int i = 0; i + 1 < message.getFieldCount(); i += 2) {
+            pendingChat.add(ChatLine.notice(message.getField(i) + " = " + message.getField(i + 1)));
+        }
+    }
 
-        switch (command) {
-            case AUTH_OK -> authOk(split);
-            case ERROR_MESSAGE -> showError(split[1]);
-            case LIST_USERS -> parseUsers(split);
-            case CHANGE_NICK_OK -> handleChangeNick(split[1]);
-            default -> addChatMessage(split[1]);
+    private void roomJoined(String room) {
+        if (joinedRooms.add(room)) {
+            List<String> items = editContacts();
+            items.add(Math.min(joinedRooms.size(), items.size()), ROOM_PREFIX + room);
+        }
+    }
+
+    private void roomLeft(String room) {
+        if (joinedRooms.remove(room)) {
+            editContacts().remove(ROOM_PREFIX + room);
+        }
+    }
+
+    private void rejoinRooms() {
+        try {
+            for (String room : joinedRooms) {
+                networkService.sendMessage(Message.of(JOIN_ROOM, room));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
         }
     }
 
-    private void handleChangeNick(String newNick) {
-        user = newNick;
+    private void handleChangeNick(Message message) {
+        user = message.getField(0);
+        if (message.getFieldCount() > 1) {
+            sessionToken = message.getField(1);
+        }
         returnToChat(null);
     }
 
-    private void parseUsers(String[] split) {
-        List<String> contact = new ArrayList<>(Arrays.asList(split));
-        contact.set(0, BROADCAST_CONTACT);
-        contacts.setItems(FXCollections.observableList(contact));
-        contacts.getSelectionModel().selectFirst();
+    private void parseUsers(String[] users) {
+        List<String> contact = new ArrayList<>(users.length + joinedRooms.size() + 1);
+        contact.add(BROADCAST_CONTACT);
+        for (String room : joinedRooms) {
+            contact.add(ROOM_PREFIX + room);
+        }
+        contact.addAll(Arrays.asList(users));
+        pendingContacts = contact;
+    }
+
+    private void applyPresenceSnapshot(Message message) {
+        String[] fields = message.getFields();
+        presenceVersion = Long.parseLong(fields[0]);
+        parseUsers(Arrays.copyOfRange(fields, 1, fields.length));
+    }
+
+    private void applyPresenceDelta(Message message) {
+        long version = Long.parseLong(message.getField(0));
+        if (version <= presenceVersion) {
+            return;
+        }
+        if (presenceVersion < 0 || version != presenceVersion + 1) {
+            requestPresenceSync();
+            return;
+        }
+        presenceVersion = version;
+
+        List<String> items = editContacts();
+        int i = 1;
+        while (i < message.getFieldCount()) {
+            PresenceEvent event = PresenceEvent.getByEvent(message.getField(i++));
+            String nick = message.getField(i++);
+            switch (event) {
+                case JOINED -> {
+                    if (!items.contains(nick)) {
+                        items.add(nick);
+                    }
+                }
+                case LEFT -> items.remove(nick);
+                case RENAMED -> {
+                    String newNick = message.getField(i++);
+                    int index = items.indexOf(nick);
+                    if (index > joinedRooms.size()) {
+                        items.set(index, newNick);
+                    } else if (!items.contains(newNick)) {
+                        items.add(newNick);
+                    }
+                }
+            }
+        }
+    }
+
+    private void requestPresenceSync() {
+        try {
+            networkService.sendMessage(Message.of(PRESENCE_SYNC));
+        } catch (IOException e) {
+            Platform.runLater(() -> showError("Network error"));
+        }
     }
 
-    private void authOk(String[] split) {
+    private void authOk(Message message) {
         System.out.println("Auth ok");
-        String login = split[1];
-        String nickname = split[2];
+        String login = message.getField(0);
+        String nickname = message.getField(1);
 
-        historyFileName = "history_" + login;
+        if (!("history_" + login).equals(historyFileName)) {
+            closeHistoryWriter();
+            historyFileName = "history_" + login;
+            openHistoryWriter();
+        }
         user = nickname;
+        if (message.getFieldCount() > 2) {
+            sessionToken = message.getField(2);
+        }
         loginPanel.setVisible(false);
         mainPanel.setVisible(true);
 
+        if (resuming) {
+            resuming = false;
+            messageWindow.append("Reconnected");
+            rejoinRooms();
+            return;
+        }
+        joinedRooms.clear();
         showMessageHistory();
     }
 
     private void showMessageHistory() {
-        try {
-            var file = new File(historyFileName);
-            if (file.exists()) {
-                var msgs = new LinkedList<String>();
-                var fr = new ReversedLinesFileReader(file);
-                String line;
-                for (int i = 0; i < LAST_HISTORY_MESSAGES_NUMBER; i++) {
-                    line = fr.readLine();
-                    if (line == null) {
-                        break;
-                    }
-                    msgs.addFirst(line);
-                }
-
-                msgs.forEach(msg -> chatArea.appendText(msg + System.lineSeparator()));
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        messageWindow.showLatest();
     }
 
     private void addChatMessage(String message) {
-        chatArea.appendText(message + System.lineSeparator());
+        long line = historyWriter != null ? historyWriter.append(message) : ChatLine.NOT_IN_HISTORY;
+        pendingChat.add(new ChatLine(message, line));
+    }
+
+    private void openHistoryWriter() {
         try {
-            writeMessageHistory(message);
+            historyFile = HistoryFile.open(historyFileName);
         } catch (IOException e) {
             e.printStackTrace();
+            return;
         }
+        messageWindow.attach(historyFile);
+        PropertyReader prop = PropertyReader.getInstance();
+        historyWriter = new HistoryWriter(
+                historyFile,
+                prop.getHistoryWriterQueueCapacity(),
+                prop.getHistoryWriterBatchSize(),
+                prop.getHistoryWriterFlushInterval(),
+                FsyncPolicy.getByName(prop.getHistoryWriterFsyncPolicy()),
+                prop.getHistoryWriterFsyncInterval()
+        );
+        historyWriter.start();
     }
 
-    private void writeMessageHistory(String message) throws IOException {
-        var fw = new FileWriter(historyFileName, true);
-        var bw = new BufferedWriter(fw);
-        bw.append(message).append(System.lineSeparator());
-        bw.close();
-        fw.close();
+    private void closeHistoryWriter() {
+        if (historyWriter != null) {
+            historyWriter.close();
+            historyWriter = null;
+        }
+        if (historyFile != null) {
+            messageWindow.attach(null);
+            historyFile.close();
+            historyFile = null;
+        }
     }
 
     public void sendChangeNick(ActionEvent actionEvent) {
@@ -236,7 +521,7 @@ public class ChatController implements Initializable, MessageProcessor {
             return;
         }
         try {
-            networkService.sendMessage(CHANGE_NICK.getCommand() + REGEX + newNick);
+            networkService.sendMessage(Message.of(CHANGE_NICK, newNick));
         } catch (IOException e) {
             e.printStackTrace();
             showError("Network error");
@@ -258,7 +543,7 @@ public class ChatController implements Initializable, MessageProcessor {
         if (login.isBlank() || password.isBlank()) {
             return;
         }
-        String msg = AUTH_MESSAGE.getCommand() + REGEX + login + REGEX + password;
+        Message msg = Message.of(AUTH_MESSAGE, login, password);
         try {
             if (!networkService.isConnected()) {
                 networkService.connect();
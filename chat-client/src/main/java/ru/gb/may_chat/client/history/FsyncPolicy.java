@@ -0,0 +1,11 @@
+package ru.gb.may_chat.client.history;
+
+public enum FsyncPolicy {
+    NONE,
+    BATCH,
+    PERIODIC;
+
+    public static FsyncPolicy getByName(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,213 @@
+package ru.gb.may_chat.client.history;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public class HistoryFile {
+    private static final int OFFSET_SIZE = Long.BYTES;
+    private static final int SCAN_BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel data;
+    private final FileChannel index;
+    private final Charset charset = Charset.defaultCharset();
+    private volatile long lineCount;
+    private volatile long endOffset;
+
+    private HistoryFile(Path dataPath) throws IOException {
+        this.data = FileChannel.open(dataPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.index = FileChannel.open(dataPath.resolveSibling(dataPath.getFileName() + ".idx"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    public static HistoryFile open(String fileName) throws IOException {
+        HistoryFile file = new HistoryFile(Path.of(fileName));
+        file.recover();
+        return file;
+    }
+
+    private void recover() throws IOException {
+        long dataSize = data.size();
+        long entries = index.size() / OFFSET_SIZE;
+        while (entries > 0 && readOffset(entries - 1) >= dataSize) {
+            entries--;
+        }
+        index.truncate(entries * OFFSET_SIZE);
+        long scanFrom = entries > 0 ? readOffset(entries - 1) : 0;
+        if (entries > 0) {
+            entries--;
+            index.truncate(entries * OFFSET_SIZE);
+        }
+        lineCount = entries;
+        endOffset = scanFrom;
+        if (scanFrom < dataSize) {
+            indexTail(scanFrom, dataSize);
+        }
+    }
+
+    private void indexTail(long from, long to) throws IOException {
+        List<Long> offsets = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long lineStart = from;
+        long position = from;
+        while (position < to) {
+            buffer.clear();
+            int read = data.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    offsets.add(lineStart);
+                    lineStart = position + i + 1;
+                }
+            }
+            position += read;
+        }
+        if (lineStart < to) {
+            offsets.add(lineStart);
+        }
+        long[] batch = new long[offsets.size()];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = offsets.get(i);
+        }
+        appended(batch, batch.length, to);
+    }
+
+    synchronized void appended(long[] offsets, int count, long newEndOffset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(count * OFFSET_SIZE);
+        for (int i = 0; i < count; i++) {
+            buffer.putLong(offsets[i]);
+        }
+        buffer.flip();
+        long position = lineCount * OFFSET_SIZE;
+        while (buffer.hasRemaining()) {
+            position += index.write(buffer, position);
+        }
+        endOffset = newEndOffset;
+        lineCount += count;
+    }
+
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    public long getEndOffset() {
+        return endOffset;
+    }
+
+    Charset getCharset() {
+        return charset;
+    }
+
+    void write(ByteBuffer buffer) throws IOException {
+        long position = endOffset;
+        while (buffer.hasRemaining()) {
+            position += data.write(buffer, position);
+        }
+    }
+
+    void force() throws IOException {
+        data.force(false);
+        index.force(false);
+    }
+
+    public List<String> readLines(long from, long to) throws IOException {
+        long count = lineCount;
+        long end = endOffset;
+        from = Math.max(0, from);
+        to = Math.min(to, count);
+        if (from >= to) {
+            return List.of();
+        }
+        long start = readOffset(from);
+        long stop = to < count ? readOffset(to) : end;
+        ByteBuffer buffer = ByteBuffer.allocate((int) (stop - start));
+        while (buffer.hasRemaining()) {
+            if (data.read(buffer, start + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        String text = charset.decode(buffer).toString();
+        List<String> lines = new ArrayList<>((int) (to - from));
+        int lineStart = 0;
+        while (lineStart < text.length() && lines.size() < to - from) {
+            int newLine = text.indexOf('\n', lineStart);
+            int lineEnd = newLine < 0 ? text.length() : newLine;
+            int contentEnd = lineEnd > lineStart && text.charAt(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            lines.add(unescape(text.substring(lineStart, contentEnd)));
+            lineStart = lineEnd + 1;
+        }
+        return lines;
+    }
+
+    // one message per line: embedded line breaks and backslashes are written as \n, \r and \\
+    static String escape(String message) {
+        if (message.indexOf('\\') < 0 && message.indexOf('\n') < 0 && message.indexOf('\r') < 0) {
+            return message;
+        }
+        StringBuilder builder = new StringBuilder(message.length() + 8);
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            switch (c) {
+                case '\\' -> builder.append("\\\\");
+                case '\n' -> builder.append("\\n");
+                case '\r' -> builder.append("\\r");
+                default -> builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    static String unescape(String line) {
+        if (line.indexOf('\\') < 0) {
+            return line;
+        }
+        StringBuilder builder = new StringBuilder(line.length());
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\\' && i + 1 < line.length()) {
+                char next = line.charAt(i + 1);
+                char unescaped = switch (next) {
+                    case 'n' -> '\n';
+                    case 'r' -> '\r';
+                    case '\\' -> '\\';
+                    default -> 0;
+                };
+                if (unescaped != 0) {
+                    builder.append(unescaped);
+                    i++;
+                    continue;
+                }
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    private long readOffset(long line) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(OFFSET_SIZE);
+        while (buffer.hasRemaining()) {
+            if (index.read(buffer, line * OFFSET_SIZE + buffer.position()) < 0) {
+                throw new IOException("History index is truncated at line " + line);
+            }
+        }
+        return buffer.getLong(0);
+    }
+
+    public void close() {
+        try {
+            index.close();
+            data.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package ru.gb.may_chat.client.history;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class HistoryWriter implements Runnable {
+    private final HistoryFile file;
+    private final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    private long[] offsets;
+    private final BlockingQueue<String> queue;
+    private final int batchSize;
+    private final long flushInterval;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncInterval;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    private long nextLine;
+    private long written;
+    private long dropped;
+    private long flushes;
+
+    public HistoryWriter(
+            HistoryFile file,
+            int capacity,
+            int batchSize,
+            long flushInterval,
+            FsyncPolicy fsyncPolicy,
+            long fsyncInterval
+    ) {
+        this.file = file;
+        this.nextLine = file.getLineCount();
+        this.offsets = new long[batchSize];
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncInterval = fsyncInterval;
+        this.thread = new Thread(this, "history-writer");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    // lines are written in queue order, so an accepted line's number is known up front
+    public synchronized long append(String message) {
+        if (!running || !queue.offer(message)) {
+            dropped++;
+            return -1;
+        }
+        return nextLine++;
+    }
+
+    @Override
+    public void run() {
+        try {
+            List<String> batch = new ArrayList<>(batchSize);
+            long lastFlush = System.currentTimeMillis();
+            long lastFsync = lastFlush;
+            boolean dirty = false;
+            while (running || !queue.isEmpty()) {
+                String line = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+                if (line != null) {
+                    batch.add(line);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+                long now = System.currentTimeMillis();
+                if (batch.size() >= batchSize || (!batch.isEmpty() && now - lastFlush >= flushInterval)) {
+                    write(batch);
+                    lastFlush = now;
+                    dirty = true;
+                }
+                if (dirty && shouldFsync(now - lastFsync)) {
+                    file.force();
+                    lastFsync = now;
+                    dirty = false;
+                }
+            }
+            queue.drainTo(batch);
+            write(batch);
+            if (fsyncPolicy != FsyncPolicy.NONE) {
+                file.force();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("History writer stopped, lines: " + written + ", flushes: " + flushes
+                + ", dropped: " + getDropped());
+    }
+
+    private boolean shouldFsync(long sinceLastFsync) {
+        return switch (fsyncPolicy) {
+            case NONE -> false;
+            case BATCH -> true;
+            case PERIODIC -> sinceLastFsync >= fsyncInterval;
+        };
+    }
+
+    private void write(List<String> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (offsets.length < batch.size()) {
+            offsets = new long[batch.size()];
+        }
+        long position = file.getEndOffset();
+        encoded.reset();
+        for (int i = 0; i < batch.size(); i++) {
+            offsets[i] = position + encoded.size();
+            encoded.writeBytes((HistoryFile.escape(batch.get(i)) + System.lineSeparator()).getBytes(file.getCharset()));
+        }
+        file.write(ByteBuffer.wrap(encoded.toByteArray()));
+        file.appended(offsets, batch.size(), position + encoded.size());
+        written += batch.size();
+        flushes++;
+        batch.clear();
+    }
+
+    public void close() {
+        running = false;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public synchronized long getDropped() {
+        return dropped;
+    }
+}
@@ -1,5 +1,9 @@
 package ru.gb.may_chat.client.net;
 
+import ru.gb.may_chat.protocol.Message;
+
 public interface MessageProcessor {
-    void processMessage(String message);
+    void processMessage(Message message);
+
+    void onConnectionLost();
 }
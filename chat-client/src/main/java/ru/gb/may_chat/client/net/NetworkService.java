@@ -2,19 +2,43 @@ package ru.gb.may_chat.client.net;
 
 import javafx.application.Platform;
 import ru.gb.may_chat.props.PropertyReader;
+import ru.gb.may_chat.protocol.Message;
+import ru.gb.may_chat.protocol.ProtocolVersion;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static ru.gb.may_chat.enums.Command.HELLO;
+import static ru.gb.may_chat.enums.Command.PING;
 
 public class NetworkService {
+    private static final int HANDSHAKE_TIMEOUT = 3000;
+    private static final long RECONNECT_BASE_DELAY = 500;
+    private static final long RECONNECT_MAX_DELAY = 15000;
+
     private  final String host;
     private  final int port;
     private DataInputStream in;
     private DataOutputStream out;
     private Socket socket;
-    private Thread clientThread;
+    private Future<?> readerTask;
+    private ScheduledFuture<?> heartbeatTask;
+    private volatile boolean closing;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService heartbeat;
+    private final long heartbeatInterval;
+    private final int preferredProtocolVersion;
+    private volatile ProtocolVersion protocol = ProtocolVersion.TEXT;
     private final MessageProcessor messageProcessor;
 
     public NetworkService(MessageProcessor messageProcessor) {
@@ -22,51 +46,130 @@ public class NetworkService {
         PropertyReader prop = PropertyReader.getInstance();
         host = prop.getHost();
         port = prop.getPort();
+        executor = prop.getExecutorStrategy().newExecutor("network-reader");
+        heartbeatInterval = prop.getHeartbeatInterval();
+        preferredProtocolVersion = prop.getProtocolVersion();
+        heartbeat = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     public void connect() throws IOException {
         socket = new Socket(host, port);
         in = new DataInputStream(socket.getInputStream());
         out = new DataOutputStream(socket.getOutputStream());
+        protocol = ProtocolVersion.TEXT;
+        negotiateProtocol();
         readMessages();
+        if (heartbeatInterval > 0) {
+            heartbeatTask = heartbeat.scheduleAtFixedRate(
+                    this::sendHeartbeat, heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void negotiateProtocol() throws IOException {
+        if (preferredProtocolVersion <= ProtocolVersion.TEXT.getVersion()) {
+            return;
+        }
+        String[] offered = new String[preferredProtocolVersion];
+        for (int i = 0; i < offered.length; i++) {
+            offered[i] = String.valueOf(i + 1);
+        }
+        sendMessage(Message.of(HELLO, offered));
+        socket.setSoTimeout(HANDSHAKE_TIMEOUT);
+        try {
+            Message reply = ProtocolVersion.TEXT.getCodec().read(in);
+            if (reply.getCommand() == HELLO) {
+                protocol = ProtocolVersion.getByVersion(Integer.parseInt(reply.getField(0)));
+                System.out.println("Negotiated protocol version " + protocol.getVersion());
+            }
+        } catch (SocketTimeoutException e) {
+            System.out.println("Server does not support protocol negotiation, using text protocol");
+        } finally {
+            socket.setSoTimeout(0);
+        }
+    }
+
+    private void sendHeartbeat() {
+        try {
+            sendMessage(Message.of(PING));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     private void readMessages() {
-        clientThread = new Thread(() -> {
+        readerTask = executor.submit(() -> {
             try {
                 while (!socket.isClosed() && !Thread.currentThread().isInterrupted()) {
-                    String income = in.readUTF();
-                    System.out.println("Got income message");
+                    Message income = protocol.getCodec().read(in);
                     messageProcessor.processMessage(income);
                 }
             } catch (IOException e) {
-                e.printStackTrace();
+                System.out.println("Connection lost: " + e.getMessage());
             } finally {
-                try {
-                    shutdown();
-                } catch (IOException e) {
-                    e.printStackTrace();
+                closeConnection();
+                if (!closing) {
+                    messageProcessor.onConnectionLost();
                 }
             }
         });
-        clientThread.start();
     }
 
-    public void sendMessage(String message) throws IOException {
-        out.writeUTF(message);
+    public boolean reconnect(int attempts) {
+        long delay = RECONNECT_BASE_DELAY;
+        for (int attempt = 1; attempt <= attempts && !closing; attempt++) {
+            try {
+                Thread.sleep(delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+                connect();
+                System.out.println("Reconnected on attempt " + attempt);
+                return true;
+            } catch (IOException e) {
+                System.out.println("Reconnect attempt " + attempt + " failed: " + e.getMessage());
+                delay = Math.min(delay * 2, RECONNECT_MAX_DELAY);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private void closeConnection() {
+        if (heartbeatTask != null) {
+            heartbeatTask.cancel(false);
+        }
+        try {
+            if (socket != null && !socket.isClosed()) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public synchronized void sendMessage(Message message) throws IOException {
+        out.write(protocol.getCodec().encode(message));
+    }
+
+    public ProtocolVersion getProtocol() {
+        return protocol;
     }
 
     public boolean isConnected() {
         return socket != null && socket.isConnected() && !socket.isClosed();
     }
 
-    public void shutdown() throws IOException {
-        if (clientThread != null && clientThread.isAlive()) {
-            clientThread.interrupt();
-        }
-        if (socket != null && !socket.isClosed()) {
-            socket.close();
+    public void shutdown() {
+        closing = true;
+        if (readerTask != null && !readerTask.isDone()) {
+            readerTask.cancel(true);
         }
+        closeConnection();
+        executor.shutdown();
+        heartbeat.shutdownNow();
         System.out.println("Client stopped");
         Platform.exit();
     }
@@ -0,0 +1,29 @@
+package ru.gb.may_chat.client.view;
+
+public class ChatLine {
+    public static final long NOT_IN_HISTORY = -1;
+
+    private final String text;
+    private final long historyLine;
+
+    public ChatLine(String text, long historyLine) {
+        this.text = text;
+        this.historyLine = historyLine;
+    }
+
+    public static ChatLine notice(String text) {
+        return new ChatLine(text, NOT_IN_HISTORY);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public long getHistoryLine() {
+        return historyLine;
+    }
+
+    public boolean isInHistory() {
+        return historyLine != NOT_IN_HISTORY;
+    }
+}
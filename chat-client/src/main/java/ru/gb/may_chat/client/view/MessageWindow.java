@@ -0,0 +1,188 @@
+package ru.gb.may_chat.client.view;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ScrollBar;
+import ru.gb.may_chat.client.history.HistoryFile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MessageWindow {
+    private static final double CELL_PADDING = 24;
+
+    private final ListView<ChatLine> view;
+    private final ObservableList<ChatLine> items = FXCollections.observableArrayList();
+    private final List<ChatLine> tail = new ArrayList<>();
+    private final int capacity;
+    private final int pageSize;
+
+    private HistoryFile history;
+    private long oldestLine;
+    private long nextLine;
+    private boolean following = true;
+    private ScrollBar scrollBar;
+
+    public MessageWindow(ListView<ChatLine> view, int capacity, int pageSize) {
+        this.view = view;
+        this.capacity = Math.max(capacity, pageSize * 2);
+        this.pageSize = pageSize;
+        view.setItems(items);
+        view.setCellFactory(list -> new MessageCell());
+        view.skinProperty().addListener((observable, oldSkin, newSkin) -> bindScrollBar());
+    }
+
+    private void bindScrollBar() {
+        for (Node node : view.lookupAll(".scroll-bar")) {
+            if (node instanceof ScrollBar bar && bar.getOrientation() == Orientation.VERTICAL) {
+                scrollBar = bar;
+                bar.valueProperty().addListener((observable, oldValue, newValue) -> {
+                    if (newValue.doubleValue() <= bar.getMin() && oldValue.doubleValue() > bar.getMin()) {
+                        loadOlder();
+                    } else if (newValue.doubleValue() >= bar.getMax() && !following) {
+                        showLatest();
+                    }
+                });
+                return;
+            }
+        }
+    }
+
+    public void attach(HistoryFile history) {
+        this.history = history;
+        this.nextLine = history != null ? history.getLineCount() : 0;
+        this.oldestLine = nextLine;
+        tail.clear();
+    }
+
+    public void append(String notice) {
+        append(List.of(ChatLine.notice(notice)));
+    }
+
+    public void append(List<ChatLine> lines) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        for (ChatLine line : lines) {
+            if (line.isInHistory()) {
+                nextLine = Math.max(nextLine, line.getHistoryLine() + 1);
+            }
+        }
+        if (!following) {
+            tail.addAll(lines);
+            if (tail.size() > capacity) {
+                tail.subList(0, tail.size() - capacity).clear();
+            }
+            return;
+        }
+        boolean atBottom = isAtBottom();
+        items.addAll(lines);
+        int excess = items.size() - capacity;
+        if (excess > 0) {
+            for (ChatLine evicted : items.subList(0, excess)) {
+                if (evicted.isInHistory()) {
+                    oldestLine = Math.max(oldestLine, evicted.getHistoryLine() + 1);
+                }
+            }
+            items.remove(0, excess);
+        }
+        if (atBottom) {
+            view.scrollTo(items.size() - 1);
+        }
+    }
+
+    public void clear() {
+        items.clear();
+        tail.clear();
+        following = true;
+        oldestLine = latestLine();
+    }
+
+    // lines that arrived while older pages were shown are kept in the tail, so only what precedes them is reread
+    public void showLatest() {
+        long boundary = latestLine();
+        for (ChatLine line : tail) {
+            if (line.isInHistory()) {
+                boundary = Math.min(boundary, line.getHistoryLine());
+            }
+        }
+        items.setAll(tail);
+        tail.clear();
+        following = true;
+        oldestLine = boundary;
+        if (items.size() + pageSize <= capacity) {
+            loadOlder();
+        }
+        view.scrollTo(Math.max(0, items.size() - 1));
+    }
+
+    private long latestLine() {
+        return history != null ? Math.max(nextLine, history.getLineCount()) : 0;
+    }
+
+    private void loadOlder() {
+        if (history == null || oldestLine <= 0) {
+            return;
+        }
+        long from = Math.max(0, oldestLine - pageSize);
+        List<String> page;
+        try {
+            page = history.readLines(from, oldestLine);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        List<ChatLine> lines = new ArrayList<>(page.size());
+        for (int i = 0; i < page.size(); i++) {
+            lines.add(new ChatLine(page.get(i), from + i));
+        }
+        oldestLine = from;
+        items.addAll(0, lines);
+        int excess = items.size() - capacity;
+        if (excess > 0) {
+            List<ChatLine> newest = items.subList(items.size() - excess, items.size());
+            tail.addAll(0, newest);
+            if (tail.size() > capacity) {
+                tail.subList(0, tail.size() - capacity).clear();
+            }
+            newest.clear();
+            following = false;
+        }
+        view.scrollTo(lines.size());
+    }
+
+    private boolean isAtBottom() {
+        if (scrollBar == null) {
+            bindScrollBar();
+        }
+        return scrollBar == null || !scrollBar.isVisible() || scrollBar.getValue() >= scrollBar.getMax() - 0.01;
+    }
+
+    private class MessageCell extends ListCell<ChatLine> {
+        private final Label label = new Label();
+
+        private MessageCell() {
+            label.setWrapText(true);
+            label.maxWidthProperty().bind(view.widthProperty().subtract(CELL_PADDING));
+            setPrefWidth(0);
+        }
+
+        @Override
+        protected void updateItem(ChatLine item, boolean empty) {
+            super.updateItem(item, empty);
+            if (empty || item == null) {
+                label.setText(null);
+                setGraphic(null);
+            } else {
+                label.setText(item.getText());
+                setGraphic(label);
+            }
+        }
+    }
+}
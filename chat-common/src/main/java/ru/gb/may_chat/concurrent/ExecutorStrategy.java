@@ -0,0 +1,45 @@
+package ru.gb.may_chat.concurrent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+public enum ExecutorStrategy {
+    PLATFORM {
+        @Override
+        public ExecutorService newExecutor(String name) {
+            AtomicLong counter = new AtomicLong();
+            ThreadFactory factory = task -> {
+                Thread thread = new Thread(task, name + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            return Executors.newCachedThreadPool(factory);
+        }
+    },
+    VIRTUAL {
+        @Override
+        public ExecutorService newExecutor(String name) {
+            try {
+                Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                builder = builderType.getMethod("name", String.class, long.class)
+                        .invoke(builder, name + "-", 1L);
+                ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+                return (ExecutorService) Executors.class
+                        .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                        .invoke(null, factory);
+            } catch (ReflectiveOperationException e) {
+                System.err.println("Virtual threads are not supported by this JVM, falling back to platform threads");
+                return PLATFORM.newExecutor(name);
+            }
+        }
+    };
+
+    public abstract ExecutorService newExecutor(String name);
+
+    public static ExecutorStrategy getByName(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+}
@@ -1,33 +1,88 @@
 package ru.gb.may_chat.enums;
 
-import java.util.Objects;
+import java.util.HashMap;
+import java.util.Map;
 
 public enum Command {
-    BROADCAST_MESSAGE("/broadcast"),
-    LIST_USERS("/list"),
-    PRIVATE_MESSAGE("/private"),
-    AUTH_MESSAGE("/auth"),
-    AUTH_OK("/auth-ok"),
-    CHANGE_NICK("/change-nick"),
-    CHANGE_NICK_OK("/change-nick-ok"),
-    ERROR_MESSAGE("/error");
+    BROADCAST_MESSAGE("/broadcast", 1, false),
+    LIST_USERS("/list", 2),
+    PRIVATE_MESSAGE("/private", 3, false),
+    AUTH_MESSAGE("/auth", 4),
+    AUTH_OK("/auth-ok", 5),
+    CHANGE_NICK("/change-nick", 6),
+    CHANGE_NICK_OK("/change-nick-ok", 7),
+    ERROR_MESSAGE("/error", 8),
+    PING("/ping", 9),
+    HELLO("/hello", 10),
+    PRESENCE("/presence", 11),
+    PRESENCE_SNAPSHOT("/presence-snapshot", 12),
+    PRESENCE_SYNC("/presence-sync", 13),
+    RESUME("/resume", 14),
+    HISTORY("/history", 15),
+    REPLAY("/replay", 16),
+    JOIN_ROOM("/join", 17),
+    LEAVE_ROOM("/leave", 18),
+    ROOM_MESSAGE("/room", 19, false),
+    PEER_HELLO("/peer-hello", 20),
+    PEER_SNAPSHOT("/peer-snapshot", 21),
+    PEER_PRESENCE("/peer-presence", 22),
+    PEER_CLAIM("/peer-claim", 23),
+    PEER_CLAIM_ACK("/peer-claim-ack", 24),
+    PEER_BROADCAST("/peer-broadcast", 25, false),
+    PEER_PRIVATE("/peer-private", 26, false),
+    PEER_ROOM("/peer-room", 27, false),
+    STATS("/stats", 28),
+    PEER_AUTH("/peer-auth", 29);
+
+    private static final Map<String, Command> BY_COMMAND = new HashMap<>();
+    private static final Command[] BY_OPCODE = new Command[256];
+
+    static {
+        for (Command value : values()) {
+            BY_COMMAND.put(value.command, value);
+            BY_OPCODE[value.opcode] = value;
+        }
+    }
 
     private String command;
+    private int opcode;
+    private boolean control;
+
+    Command(String command, int opcode) {
+        this(command, opcode, true);
+    }
 
-    Command(String command) {
+    Command(String command, int opcode, boolean control) {
         this.command = command;
+        this.opcode = opcode;
+        this.control = control;
     }
 
     public String getCommand() {
         return command;
     }
 
+    public int getOpcode() {
+        return opcode;
+    }
+
+    public boolean isControl() {
+        return control;
+    }
+
     public static Command getByCommand(String command) {
-        for (Command value : values()) {
-            if (Objects.equals(value.command, command)) {
-                return value;
-            }
+        Command value = BY_COMMAND.get(command);
+        if (value == null) {
+            throw new IllegalArgumentException("Unknown command: " + command);
+        }
+        return value;
+    }
+
+    public static Command getByOpcode(int opcode) {
+        Command value = opcode >= 0 && opcode < BY_OPCODE.length ? BY_OPCODE[opcode] : null;
+        if (value == null) {
+            throw new IllegalArgumentException("Unknown opcode: " + opcode);
         }
-        throw new IllegalArgumentException();
+        return value;
     }
 }
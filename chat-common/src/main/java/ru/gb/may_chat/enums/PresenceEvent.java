@@ -0,0 +1,26 @@
+package ru.gb.may_chat.enums;
+
+public enum PresenceEvent {
+    JOINED("joined"),
+    LEFT("left"),
+    RENAMED("renamed");
+
+    private final String event;
+
+    PresenceEvent(String event) {
+        this.event = event;
+    }
+
+    public String getEvent() {
+        return event;
+    }
+
+    public static PresenceEvent getByEvent(String event) {
+        for (PresenceEvent value : values()) {
+            if (value.event.equals(event)) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Unknown presence event: " + event);
+    }
+}
@@ -1,5 +1,7 @@
 package ru.gb.may_chat.props;
 
+import ru.gb.may_chat.concurrent.ExecutorStrategy;
+
 import java.io.InputStream;
 import java.util.Properties;
 
@@ -8,6 +10,68 @@ public class PropertyReader {
     private String host;
     private int port;
     private long authTimeout;
+    private String serverMode;
+    private int nioEventLoops;
+    private ExecutorStrategy executorStrategy;
+    private long idleTimeout;
+    private long heartbeatInterval;
+    private long timerTick;
+    private int timerWheelSize;
+    private int outboundQueueCapacity;
+    private String outboundOverflowPolicy;
+    private int protocolVersion;
+    private long presenceWindow;
+    private String dbUrl;
+    private int dbPoolSize;
+    private long dbPoolTimeout;
+    private int authWorkers;
+    private int authQueueCapacity;
+    private int userCacheSize;
+    private long userCacheTtl;
+    private long sessionTokenTtl;
+    private String sessionTokenSecret;
+    private String sessionTokenSecretFile;
+    private int reconnectAttempts;
+    private String userService;
+    private String userStoreDir;
+    private long userSnapshotInterval;
+    private boolean historyEnabled;
+    private String historyDir;
+    private int historySegmentSize;
+    private int historyIndexInterval;
+    private long historyRetentionMs;
+    private long historyRetentionBytes;
+    private int historyMaxBatch;
+    private int historyMaxScan;
+    private int historyReaders;
+    private int historyReadQueueCapacity;
+    private int historyRecentSize;
+    private int historyReplaySize;
+    private int historyWriterQueueCapacity;
+    private int historyWriterBatchSize;
+    private long historyWriterFlushInterval;
+    private String historyWriterFsyncPolicy;
+    private long historyWriterFsyncInterval;
+    private int chatViewCapacity;
+    private int roomMaxJoined;
+    private boolean clusterEnabled;
+    private String clusterNodeId;
+    private String clusterBindAddress;
+    private int clusterPort;
+    private String clusterSecret;
+    private String clusterPeers;
+    private int clusterVirtualNodes;
+    private long clusterReconnectInterval;
+    private long clusterClaimTimeout;
+    private int clusterQueueCapacity;
+    private boolean offlineEnabled;
+    private int offlineMaxPerUser;
+    private long offlineTtl;
+    private int offlineBatchSize;
+    private int offlineQueueCapacity;
+    private long offlinePurgeInterval;
+    private String adminLogins;
+    private boolean metricsJmxEnabled;
 
     private PropertyReader() {
         getPropValues();
@@ -25,9 +89,73 @@ public class PropertyReader {
         try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(propFileName)) {
             Properties properties = new Properties();
             properties.load(inputStream);
+            // -Dkey=value overrides the file, so several nodes can run from one build
+            properties.putAll(System.getProperties());
             host = properties.getProperty("host");
             port = Integer.parseInt(properties.getProperty("port"));
             authTimeout = Long.parseLong(properties.getProperty("auth.timeout"));
+            serverMode = properties.getProperty("server.mode", "blocking");
+            nioEventLoops = Integer.parseInt(properties.getProperty("nio.event.loops", "0"));
+            executorStrategy = ExecutorStrategy.getByName(properties.getProperty("executor.strategy", "platform"));
+            idleTimeout = Long.parseLong(properties.getProperty("idle.timeout", "0"));
+            heartbeatInterval = Long.parseLong(properties.getProperty("heartbeat.interval", "0"));
+            timerTick = Long.parseLong(properties.getProperty("timer.tick", "100"));
+            timerWheelSize = Integer.parseInt(properties.getProperty("timer.wheel.size", "512"));
+            outboundQueueCapacity = Integer.parseInt(properties.getProperty("outbound.queue.capacity", "1024"));
+            outboundOverflowPolicy = properties.getProperty("outbound.overflow.policy", "drop_oldest");
+            protocolVersion = Integer.parseInt(properties.getProperty("protocol.version", "2"));
+            presenceWindow = Long.parseLong(properties.getProperty("presence.window", "100"));
+            dbUrl = properties.getProperty("db.url", "jdbc:sqlite:chat-db");
+            dbPoolSize = Integer.parseInt(properties.getProperty("db.pool.size", "4"));
+            dbPoolTimeout = Long.parseLong(properties.getProperty("db.pool.timeout", "5000"));
+            authWorkers = Integer.parseInt(properties.getProperty("auth.workers", "4"));
+            authQueueCapacity = Integer.parseInt(properties.getProperty("auth.queue.capacity", "256"));
+            userCacheSize = Integer.parseInt(properties.getProperty("user.cache.size", "10000"));
+            userCacheTtl = Long.parseLong(properties.getProperty("user.cache.ttl", "300000"));
+            sessionTokenTtl = Long.parseLong(properties.getProperty("session.token.ttl", "600000"));
+            sessionTokenSecret = properties.getProperty("session.token.secret", "");
+            sessionTokenSecretFile = properties.getProperty("session.token.secret.file", "session-secret");
+            reconnectAttempts = Integer.parseInt(properties.getProperty("reconnect.attempts", "5"));
+            userService = properties.getProperty("user.service", "db");
+            userStoreDir = properties.getProperty("user.store.dir", "user-store");
+            userSnapshotInterval = Long.parseLong(properties.getProperty("user.snapshot.interval", "60000"));
+            historyEnabled = Boolean.parseBoolean(properties.getProperty("history.enabled", "true"));
+            historyDir = properties.getProperty("history.dir", "message-log");
+            historySegmentSize = Integer.parseInt(properties.getProperty("history.segment.size", "16777216"));
+            historyIndexInterval = Integer.parseInt(properties.getProperty("history.index.interval", "4096"));
+            historyRetentionMs = Long.parseLong(properties.getProperty("history.retention.ms", "604800000"));
+            historyRetentionBytes = Long.parseLong(properties.getProperty("history.retention.bytes", "1073741824"));
+            historyMaxBatch = Integer.parseInt(properties.getProperty("history.max.batch", "500"));
+            historyMaxScan = Integer.parseInt(properties.getProperty("history.max.scan", "100000"));
+            historyReaders = Integer.parseInt(properties.getProperty("history.readers", "2"));
+            historyReadQueueCapacity = Integer.parseInt(properties.getProperty("history.read.queue.capacity", "64"));
+            historyRecentSize = Integer.parseInt(properties.getProperty("history.recent.size", "256"));
+            historyReplaySize = Integer.parseInt(properties.getProperty("history.replay.size", "100"));
+            historyWriterQueueCapacity = Integer.parseInt(properties.getProperty("history.writer.queue.capacity", "4096"));
+            historyWriterBatchSize = Integer.parseInt(properties.getProperty("history.writer.batch.size", "64"));
+            historyWriterFlushInterval = Long.parseLong(properties.getProperty("history.writer.flush.interval", "200"));
+            historyWriterFsyncPolicy = properties.getProperty("history.writer.fsync.policy", "periodic");
+            historyWriterFsyncInterval = Long.parseLong(properties.getProperty("history.writer.fsync.interval", "1000"));
+            chatViewCapacity = Integer.parseInt(properties.getProperty("chat.view.capacity", "2000"));
+            roomMaxJoined = Integer.parseInt(properties.getProperty("room.max.joined", "32"));
+            clusterEnabled = Boolean.parseBoolean(properties.getProperty("cluster.enabled", "false"));
+            clusterNodeId = properties.getProperty("cluster.node.id", "");
+            clusterBindAddress = properties.getProperty("cluster.bind.address", "127.0.0.1");
+            clusterPort = Integer.parseInt(properties.getProperty("cluster.port", "9189"));
+            clusterSecret = properties.getProperty("cluster.secret", "");
+            clusterPeers = properties.getProperty("cluster.peers", "");
+            clusterVirtualNodes = Integer.parseInt(properties.getProperty("cluster.virtual.nodes", "64"));
+            clusterReconnectInterval = Long.parseLong(properties.getProperty("cluster.reconnect.interval", "2000"));
+            clusterClaimTimeout = Long.parseLong(properties.getProperty("cluster.claim.timeout", "3000"));
+            clusterQueueCapacity = Integer.parseInt(properties.getProperty("cluster.queue.capacity", "8192"));
+            offlineEnabled = Boolean.parseBoolean(properties.getProperty("offline.enabled", "true"));
+            offlineMaxPerUser = Integer.parseInt(properties.getProperty("offline.max.per.user", "1000"));
+            offlineTtl = Long.parseLong(properties.getProperty("offline.ttl", "604800000"));
+            offlineBatchSize = Integer.parseInt(properties.getProperty("offline.batch.size", "200"));
+            offlineQueueCapacity = Integer.parseInt(properties.getProperty("offline.queue.capacity", "10000"));
+            offlinePurgeInterval = Long.parseLong(properties.getProperty("offline.purge.interval", "60000"));
+            adminLogins = properties.getProperty("admin.logins", "");
+            metricsJmxEnabled = Boolean.parseBoolean(properties.getProperty("metrics.jmx.enabled", "true"));
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -45,4 +173,252 @@ public class PropertyReader {
     public long getAuthTimeout() {
         return authTimeout;
     }
+
+    public String getServerMode() {
+        return serverMode;
+    }
+
+    public int getNioEventLoops() {
+        return nioEventLoops;
+    }
+
+    public ExecutorStrategy getExecutorStrategy() {
+        return executorStrategy;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public long getHeartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    public long getTimerTick() {
+        return timerTick;
+    }
+
+    public int getTimerWheelSize() {
+        return timerWheelSize;
+    }
+
+    public int getOutboundQueueCapacity() {
+        return outboundQueueCapacity;
+    }
+
+    public String getOutboundOverflowPolicy() {
+        return outboundOverflowPolicy;
+    }
+
+    public int getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    public long getPresenceWindow() {
+        return presenceWindow;
+    }
+
+    public String getDbUrl() {
+        return dbUrl;
+    }
+
+    public int getDbPoolSize() {
+        return dbPoolSize;
+    }
+
+    public long getDbPoolTimeout() {
+        return dbPoolTimeout;
+    }
+
+    public int getAuthWorkers() {
+        return authWorkers;
+    }
+
+    public int getAuthQueueCapacity() {
+        return authQueueCapacity;
+    }
+
+    public int getUserCacheSize() {
+        return userCacheSize;
+    }
+
+    public long getUserCacheTtl() {
+        return userCacheTtl;
+    }
+
+    public long getSessionTokenTtl() {
+        return sessionTokenTtl;
+    }
+
+    public String getSessionTokenSecret() {
+        return sessionTokenSecret;
+    }
+
+    public String getSessionTokenSecretFile() {
+        return sessionTokenSecretFile;
+    }
+
+    public int getReconnectAttempts() {
+        return reconnectAttempts;
+    }
+
+    public String getUserService() {
+        return userService;
+    }
+
+    public String getUserStoreDir() {
+        return userStoreDir;
+    }
+
+    public long getUserSnapshotInterval() {
+        return userSnapshotInterval;
+    }
+
+    public boolean isHistoryEnabled() {
+        return historyEnabled;
+    }
+
+    public String getHistoryDir() {
+        return historyDir;
+    }
+
+    public int getHistorySegmentSize() {
+        return historySegmentSize;
+    }
+
+    public int getHistoryIndexInterval() {
+        return historyIndexInterval;
+    }
+
+    public long getHistoryRetentionMs() {
+        return historyRetentionMs;
+    }
+
+    public long getHistoryRetentionBytes() {
+        return historyRetentionBytes;
+    }
+
+    public int getHistoryMaxBatch() {
+        return historyMaxBatch;
+    }
+
+    public int getHistoryMaxScan() {
+        return historyMaxScan;
+    }
+
+    public int getHistoryReaders() {
+        return historyReaders;
+    }
+
+    public int getHistoryReadQueueCapacity() {
+        return historyReadQueueCapacity;
+    }
+
+    public int getHistoryRecentSize() {
+        return historyRecentSize;
+    }
+
+    public int getHistoryReplaySize() {
+        return historyReplaySize;
+    }
+
+    public int getHistoryWriterQueueCapacity() {
+        return historyWriterQueueCapacity;
+    }
+
+    public int getHistoryWriterBatchSize() {
+        return historyWriterBatchSize;
+    }
+
+    public long getHistoryWriterFlushInterval() {
+        return historyWriterFlushInterval;
+    }
+
+    public String getHistoryWriterFsyncPolicy() {
+        return historyWriterFsyncPolicy;
+    }
+
+    public long getHistoryWriterFsyncInterval() {
+        return historyWriterFsyncInterval;
+    }
+
+    public int getChatViewCapacity() {
+        return chatViewCapacity;
+    }
+
+    public int getRoomMaxJoined() {
+        return roomMaxJoined;
+    }
+
+    public boolean isClusterEnabled() {
+        return clusterEnabled;
+    }
+
+    public String getClusterNodeId() {
+        return clusterNodeId;
+    }
+
+    public String getClusterBindAddress() {
+        return clusterBindAddress;
+    }
+
+    public int getClusterPort() {
+        return clusterPort;
+    }
+
+    public String getClusterSecret() {
+        return clusterSecret;
+    }
+
+    public String getClusterPeers() {
+        return clusterPeers;
+    }
+
+    public int getClusterVirtualNodes() {
+        return clusterVirtualNodes;
+    }
+
+    public long getClusterReconnectInterval() {
+        return clusterReconnectInterval;
+    }
+
+    public long getClusterClaimTimeout() {
+        return clusterClaimTimeout;
+    }
+
+    public int getClusterQueueCapacity() {
+        return clusterQueueCapacity;
+    }
+
+    public boolean isOfflineEnabled() {
+        return offlineEnabled;
+    }
+
+    public int getOfflineMaxPerUser() {
+        return offlineMaxPerUser;
+    }
+
+    public long getOfflineTtl() {
+        return offlineTtl;
+    }
+
+    public int getOfflineBatchSize() {
+        return offlineBatchSize;
+    }
+
+    public int getOfflineQueueCapacity() {
+        return offlineQueueCapacity;
+    }
+
+    public long getOfflinePurgeInterval() {
+        return offlinePurgeInterval;
+    }
+
+    public String getAdminLogins() {
+        return adminLogins;
+    }
+
+    public boolean isMetricsJmxEnabled() {
+        return metricsJmxEnabled;
+    }
 }
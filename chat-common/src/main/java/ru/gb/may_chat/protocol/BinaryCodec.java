@@ -0,0 +1,95 @@
+package ru.gb.may_chat.protocol;
+
+import ru.gb.may_chat.enums.Command;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class BinaryCodec implements Codec {
+    private static final int HEADER_SIZE = Integer.BYTES;
+    private static final int MAX_FRAME_SIZE = 1 << 20;
+
+    @Override
+    public byte[] encode(Message message) {
+        int fieldCount = message.getFieldCount();
+        byte[][] fields = new byte[fieldCount][];
+        int bodyLength = 1 + Short.BYTES;
+        for (int i = 0; i < fieldCount; i++) {
+            fields[i] = message.getField(i).getBytes(StandardCharsets.UTF_8);
+            bodyLength += Integer.BYTES + fields[i].length;
+        }
+        if (bodyLength > MAX_FRAME_SIZE) {
+            throw new IllegalArgumentException("Encoded message too long: " + bodyLength + " bytes");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + bodyLength);
+        buffer.putInt(bodyLength);
+        buffer.put((byte) message.getCommand().getOpcode());
+        buffer.putShort((short) fieldCount);
+        for (byte[] field : fields) {
+            buffer.putInt(field.length);
+            buffer.put(field);
+        }
+        return buffer.array();
+    }
+
+    @Override
+    public Message read(DataInputStream in) throws IOException {
+        int length = checkLength(in.readInt());
+        byte[] body = new byte[length];
+        in.readFully(body);
+        return parse(ByteBuffer.wrap(body), length);
+    }
+
+    @Override
+    public int frameLength(ByteBuffer buffer) throws ProtocolException {
+        if (buffer.remaining() < HEADER_SIZE) {
+            return -1;
+        }
+        return HEADER_SIZE + checkLength(buffer.getInt(buffer.position()));
+    }
+
+    @Override
+    public Message decode(ByteBuffer buffer) throws IOException {
+        int length = checkLength(buffer.getInt());
+        return parse(buffer, length);
+    }
+
+    private Message parse(ByteBuffer buffer, int length) throws ProtocolException {
+        int end = buffer.position() + length;
+        Command command;
+        try {
+            command = Command.getByOpcode(buffer.get() & 0xFF);
+        } catch (IllegalArgumentException e) {
+            throw new ProtocolException(e.getMessage());
+        }
+        int fieldCount = Short.toUnsignedInt(buffer.getShort());
+        String[] fields = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            if (buffer.position() + Integer.BYTES > end) {
+                throw new ProtocolException("Field header out of frame bounds");
+            }
+            int fieldLength = buffer.getInt();
+            if (fieldLength < 0 || buffer.position() + fieldLength > end) {
+                throw new ProtocolException("Field length out of frame bounds: " + fieldLength);
+            }
+            fields[i] = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), fieldLength,
+                    StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + fieldLength);
+        }
+        if (buffer.position() != end) {
+            throw new ProtocolException("Frame length mismatch");
+        }
+        return Message.of(command, fields);
+    }
+
+    private int checkLength(int length) throws ProtocolException {
+        if (length < 1 + Short.BYTES || length > MAX_FRAME_SIZE) {
+            throw new ProtocolException("Invalid frame length: " + length);
+        }
+        return length;
+    }
+}
@@ -0,0 +1,16 @@
+package ru.gb.may_chat.protocol;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+public interface Codec {
+    byte[] encode(Message message);
+
+    Message read(DataInputStream in) throws IOException;
+
+    int frameLength(ByteBuffer buffer) throws ProtocolException;
+
+    Message decode(ByteBuffer buffer) throws IOException;
+}
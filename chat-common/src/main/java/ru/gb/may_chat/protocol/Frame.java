@@ -0,0 +1,61 @@
+package ru.gb.may_chat.protocol;
+
+import ru.gb.may_chat.enums.Command;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public final class Frame {
+    private final Message message;
+    private final AtomicReferenceArray<byte[]> encoded =
+            new AtomicReferenceArray<>(ProtocolVersion.values().length);
+
+    private Frame(Message message) {
+        this.message = message;
+    }
+
+    public static Frame of(Command command, String... fields) {
+        return new Frame(Message.of(command, fields));
+    }
+
+    public static Frame of(Message message) {
+        return new Frame(message);
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    public Command getCommand() {
+        return message.getCommand();
+    }
+
+    public boolean isControl() {
+        return message.getCommand().isControl();
+    }
+
+    public void writeTo(OutputStream out, ProtocolVersion version) throws IOException {
+        out.write(bytes(version));
+    }
+
+    public ByteBuffer asByteBuffer(ProtocolVersion version) {
+        return ByteBuffer.wrap(bytes(version)).asReadOnlyBuffer();
+    }
+
+    public int size(ProtocolVersion version) {
+        return bytes(version).length;
+    }
+
+    private byte[] bytes(ProtocolVersion version) {
+        byte[] bytes = encoded.get(version.ordinal());
+        if (bytes == null) {
+            bytes = version.getCodec().encode(message);
+            if (!encoded.compareAndSet(version.ordinal(), null, bytes)) {
+                bytes = encoded.get(version.ordinal());
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,43 @@
+package ru.gb.may_chat.protocol;
+
+import ru.gb.may_chat.enums.Command;
+
+import java.util.Arrays;
+
+public final class Message {
+    private final Command command;
+    private final String[] fields;
+
+    private Message(Command command, String[] fields) {
+        this.command = command;
+        this.fields = fields;
+    }
+
+    public static Message of(Command command, String... fields) {
+        return new Message(command, fields);
+    }
+
+    public Command getCommand() {
+        return command;
+    }
+
+    public String getField(int index) {
+        return fields[index];
+    }
+
+    public int getFieldCount() {
+        return fields.length;
+    }
+
+    public String[] getFields() {
+        return fields.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "Message{" +
+                "command=" + command +
+                ", fields=" + Arrays.toString(fields) +
+                '}';
+    }
+}
@@ -0,0 +1,43 @@
+package ru.gb.may_chat.protocol;
+
+public enum ProtocolVersion {
+    TEXT(1, new TextCodec()),
+    BINARY(2, new BinaryCodec());
+
+    private final int version;
+    private final Codec codec;
+
+    ProtocolVersion(int version, Codec codec) {
+        this.version = version;
+        this.codec = codec;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public Codec getCodec() {
+        return codec;
+    }
+
+    public static ProtocolVersion getByVersion(int version) {
+        for (ProtocolVersion value : values()) {
+            if (value.version == version) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported protocol version: " + version);
+    }
+
+    public static ProtocolVersion negotiate(String[] offered) {
+        ProtocolVersion best = TEXT;
+        for (String version : offered) {
+            for (ProtocolVersion value : values()) {
+                if (String.valueOf(value.version).equals(version) && value.version > best.version) {
+                    best = value;
+                }
+            }
+        }
+        return best;
+    }
+}
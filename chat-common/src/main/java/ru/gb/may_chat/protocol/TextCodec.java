@@ -0,0 +1,154 @@
+package ru.gb.may_chat.protocol;
+
+import ru.gb.may_chat.enums.Command;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ru.gb.may_chat.constants.MessageConstants.REGEX;
+
+public class TextCodec implements Codec {
+    private static final int HEADER_SIZE = 2;
+    private static final int MAX_PAYLOAD_SIZE = 0xFFFF;
+    private static final String[] NO_FIELDS = new String[0];
+
+    @Override
+    public byte[] encode(Message message) {
+        StringBuilder text = new StringBuilder(message.getCommand().getCommand());
+        for (int i = 0; i < message.getFieldCount(); i++) {
+            text.append(REGEX).append(message.getField(i));
+        }
+        try {
+            return encodeUtf(text.toString());
+        } catch (UTFDataFormatException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Message read(DataInputStream in) throws IOException {
+        return parse(in.readUTF());
+    }
+
+    @Override
+    public int frameLength(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE) {
+            return -1;
+        }
+        return HEADER_SIZE + Short.toUnsignedInt(buffer.getShort(buffer.position()));
+    }
+
+    @Override
+    public Message decode(ByteBuffer buffer) throws IOException {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        return parse(decodeUtf(buffer, length));
+    }
+
+    public static Message parse(String text) throws ProtocolException {
+        int end = text.indexOf(REGEX);
+        Command command = getCommand(end < 0 ? text : text.substring(0, end));
+        if (end < 0) {
+            return Message.of(command, NO_FIELDS);
+        }
+        List<String> fields = new ArrayList<>();
+        int start = end + REGEX.length();
+        while ((end = text.indexOf(REGEX, start)) >= 0) {
+            fields.add(text.substring(start, end));
+            start = end + REGEX.length();
+        }
+        fields.add(text.substring(start));
+        return Message.of(command, fields.toArray(NO_FIELDS));
+    }
+
+    private static Command getCommand(String command) throws ProtocolException {
+        try {
+            return Command.getByCommand(command);
+        } catch (IllegalArgumentException e) {
+            throw new ProtocolException(e.getMessage());
+        }
+    }
+
+    // lets senders reject a message up front instead of failing when it is encoded for each recipient
+    public static boolean fits(Message message) {
+        long utfLength = utfLength(message.getCommand().getCommand());
+        for (int i = 0; i < message.getFieldCount(); i++) {
+            utfLength += utfLength(REGEX) + utfLength(message.getField(i));
+        }
+        return utfLength <= MAX_PAYLOAD_SIZE;
+    }
+
+    private static int utfLength(String text) {
+        int length = text.length();
+        int utfLength = length;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80 || c == 0) {
+                utfLength += c >= 0x800 ? 2 : 1;
+            }
+        }
+        return utfLength;
+    }
+
+    private static byte[] encodeUtf(String message) throws UTFDataFormatException {
+        int length = message.length();
+        int utfLength = utfLength(message);
+        if (utfLength > MAX_PAYLOAD_SIZE) {
+            throw new UTFDataFormatException("Encoded message too long: " + utfLength + " bytes");
+        }
+
+        byte[] bytes = new byte[utfLength + HEADER_SIZE];
+        int position = 0;
+        bytes[position++] = (byte) (utfLength >>> 8);
+        bytes[position++] = (byte) utfLength;
+        for (int i = 0; i < length; i++) {
+            char c = message.charAt(i);
+            if (c < 0x80 && c != 0) {
+                bytes[position++] = (byte) c;
+            } else if (c >= 0x800) {
+                bytes[position++] = (byte) (0xE0 | ((c >> 12) & 0x0F));
+                bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            } else {
+                bytes[position++] = (byte) (0xC0 | ((c >> 6) & 0x1F));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return bytes;
+    }
+
+    private static String decodeUtf(ByteBuffer buffer, int length) throws UTFDataFormatException {
+        char[] chars = new char[length];
+        int count = 0;
+        int end = buffer.position() + length;
+        while (buffer.position() < end) {
+            int c = buffer.get() & 0xFF;
+            if (c < 0x80) {
+                chars[count++] = (char) c;
+            } else if ((c >> 5) == 0x06 && buffer.position() < end) {
+                int c2 = buffer.get();
+                checkContinuation(c2);
+                chars[count++] = (char) (((c & 0x1F) << 6) | (c2 & 0x3F));
+            } else if ((c >> 4) == 0x0E && buffer.position() + 1 < end) {
+                int c2 = buffer.get();
+                int c3 = buffer.get();
+                checkContinuation(c2);
+                checkContinuation(c3);
+                chars[count++] = (char) (((c & 0x0F) << 12) | ((c2 & 0x3F) << 6) | (c3 & 0x3F));
+            } else {
+                throw new UTFDataFormatException("Malformed input around byte " + buffer.position());
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    private static void checkContinuation(int c) throws UTFDataFormatException {
+        if ((c & 0xC0) != 0x80) {
+            throw new UTFDataFormatException("Malformed continuation byte");
+        }
+    }
+}
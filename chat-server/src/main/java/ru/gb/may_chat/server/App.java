@@ -1,10 +1,35 @@
 package ru.gb.may_chat.server;
 
+import ru.gb.may_chat.props.PropertyReader;
 import ru.gb.may_chat.server.dao.UserDao;
+import ru.gb.may_chat.server.dao.UserSnapshotStore;
+import ru.gb.may_chat.server.enums.ServerMode;
+import ru.gb.may_chat.server.service.UserService;
+import ru.gb.may_chat.server.service.impl.CachingUserService;
 import ru.gb.may_chat.server.service.impl.DbUserServiceImpl;
+import ru.gb.may_chat.server.service.impl.InMemoryUserServiceImpl;
+
+import java.nio.file.Path;
 
 public class App {
     public static void main(String[] args) {
-        new Server(new DbUserServiceImpl(new UserDao())).start();
+        PropertyReader prop = PropertyReader.getInstance();
+        String mode = args.length > 0 ? args[0] : prop.getServerMode();
+        new Server(createUserService(prop), ServerMode.getByName(mode)).start();
+    }
+
+    private static UserService createUserService(PropertyReader prop) {
+        return switch (prop.getUserService().trim().toLowerCase()) {
+            case "memory" -> new InMemoryUserServiceImpl(
+                    new UserSnapshotStore(Path.of(prop.getUserStoreDir())),
+                    prop.getUserSnapshotInterval()
+            );
+            case "db" -> new CachingUserService(
+                    new DbUserServiceImpl(new UserDao()),
+                    prop.getUserCacheSize(),
+                    prop.getUserCacheTtl()
+            );
+            default -> throw new IllegalArgumentException("Unknown user service: " + prop.getUserService());
+        };
     }
 }
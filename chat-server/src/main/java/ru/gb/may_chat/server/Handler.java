@@ -2,154 +2,420 @@ package ru.gb.may_chat.server;
 
 import ru.gb.may_chat.enums.Command;
 import ru.gb.may_chat.props.PropertyReader;
+import ru.gb.may_chat.protocol.Frame;
+import ru.gb.may_chat.protocol.Message;
+import ru.gb.may_chat.protocol.ProtocolVersion;
+import ru.gb.may_chat.server.error.AlreadyConnectedException;
 import ru.gb.may_chat.server.error.NickAlreadyIsBusyException;
+import ru.gb.may_chat.server.enums.OverflowPolicy;
+import ru.gb.may_chat.server.error.ServerBusyException;
 import ru.gb.may_chat.server.error.WrongCredentialsException;
+import ru.gb.may_chat.server.metrics.ServerMetrics;
+import ru.gb.may_chat.server.outbound.OutboundQueue;
+import ru.gb.may_chat.server.outbound.QueuedFrame;
+import ru.gb.may_chat.server.session.SessionToken;
+import ru.gb.may_chat.server.timer.Timeout;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
-import java.net.Socket;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import static ru.gb.may_chat.constants.MessageConstants.REGEX;
 import static ru.gb.may_chat.enums.Command.AUTH_MESSAGE;
 import static ru.gb.may_chat.enums.Command.AUTH_OK;
 import static ru.gb.may_chat.enums.Command.CHANGE_NICK_OK;
 import static ru.gb.may_chat.enums.Command.ERROR_MESSAGE;
+import static ru.gb.may_chat.enums.Command.HELLO;
+import static ru.gb.may_chat.enums.Command.PING;
+import static ru.gb.may_chat.enums.Command.RESUME;
 
-public class Handler {
-    private Socket socket;
-    private DataOutputStream out;
-    private DataInputStream in;
-    private Thread handlerThread;
-    private Server server;
-    private String user;
+public abstract class Handler {
+    private static final String SESSION_EXPIRED = "Session expired, please log in again";
 
-    private Long authTimeout;
+    protected final Server server;
+    private volatile String user;
+    private volatile String login;
+    private volatile String credentialStamp;
+
+    protected final long authTimeout;
+    private final long idleTimeout;
+    private volatile long lastActivity;
+    private volatile Timeout authDeadline;
+    private volatile Timeout idleDeadline;
+    private final AtomicBoolean heartbeats = new AtomicBoolean();
+    protected final OutboundQueue outbound;
+    protected volatile ProtocolVersion protocol = ProtocolVersion.TEXT;
+
+    private final AtomicBoolean authPending = new AtomicBoolean();
+    private final AtomicBoolean overflowed = new AtomicBoolean();
+    private final AtomicBoolean nickChangePending = new AtomicBoolean();
+    private final Set<String> rooms = ConcurrentHashMap.newKeySet();
 
     private final Object mon = new Object();
 
-    public Handler(Socket socket, Server server) {
-        try {
-            this.server = server;
-            this.socket = socket;
-            this.in = new DataInputStream(socket.getInputStream());
-            this.out = new DataOutputStream(socket.getOutputStream());
-            this.authTimeout = PropertyReader.getInstance().getAuthTimeout();
-            System.out.println("Handler created");
-        } catch (IOException e) {
-            System.err.println("Connection problems with user: " + user);
-        }
+    protected Handler(Server server) {
+        this.server = server;
+        this.authTimeout = PropertyReader.getInstance().getAuthTimeout();
+        this.idleTimeout = PropertyReader.getInstance().getIdleTimeout();
+        this.outbound = new OutboundQueue(
+                PropertyReader.getInstance().getOutboundQueueCapacity(),
+                OverflowPolicy.getByName(PropertyReader.getInstance().getOutboundOverflowPolicy())
+        );
     }
 
     public void handle() {
-        handlerThread = new Thread(() -> {
-            authorize();
-            System.out.println("Auth done");
-            while (!Thread.currentThread().isInterrupted() && !socket.isClosed()) {
-                try {
-                    String message = in.readUTF();
-                    parseMessage(message);
-                } catch (IOException e) {
-                    System.out.println("Connection broken with client: " + user);
-                    server.removeHandler(this);
+        ServerMetrics.getInstance().connectionOpened();
+        lastActivity = System.currentTimeMillis();
+        authDeadline = schedule(this::onAuthTimeout, authTimeout);
+        start();
+    }
+
+    protected abstract void start();
+
+    public void send(Command command, String... fields) {
+        send(Frame.of(command, fields));
+    }
+
+    public void send(Frame frame) {
+        if (isClosed()) {
+            return;
+        }
+        if (enqueue(frame)) {
+            flush();
+        }
+    }
+
+    public void send(List<Frame> frames) {
+        if (isClosed()) {
+            return;
+        }
+        for (Frame frame : frames) {
+            if (!enqueue(frame)) {
+                return;
+            }
+        }
+        flush();
+    }
+
+    // frames sent this way are never dropped by the overflow policy; onWritten runs once the last one is written
+    public boolean sendGuaranteed(List<Frame> frames, Runnable onWritten) {
+        if (isClosed() || frames.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < frames.size(); i++) {
+            Runnable callback = i == frames.size() - 1 ? onWritten : null;
+            if (!enqueue(new QueuedFrame(frames.get(i), protocol, false, callback))) {
+                return false;
+            }
+        }
+        flush();
+        return true;
+    }
+
+    private boolean enqueue(Frame frame) {
+        return enqueue(new QueuedFrame(frame, protocol));
+    }
+
+    private boolean enqueue(QueuedFrame frame) {
+        if (overflowed.get()) {
+            return false;
+        }
+        if (outbound.offer(frame)) {
+            return true;
+        }
+        if (overflowed.compareAndSet(false, true)) {
+            System.out.println("Outbound queue overflow, disconnecting slow client: " + user);
+            ServerMetrics.getInstance().slowClientDisconnected();
+            // senders may hold the server or presence locks, and closing ends up in server.removeHandler
+            server.getExecutor().execute(this::close);
+        }
+        return false;
+    }
+
+    protected abstract void flush();
+
+    // a frame too large for this client's protocol is skipped rather than failing the whole writer
+    protected void dropUnencodable(IllegalArgumentException e) {
+        System.out.println("Dropping frame for " + user + ": " + e.getMessage());
+        ServerMetrics.getInstance().outboundFrameDropped();
+    }
+
+    public abstract void close();
+
+    public abstract boolean isClosed();
+
+    protected void onMessage(Message message) {
+        lastActivity = System.currentTimeMillis();
+        ServerMetrics.getInstance().messageReceived(message.getCommand());
+        if (message.getCommand() == PING) {
+            onHeartbeat();
+            return;
+        }
+        try {
+            if (user == null) {
+                if (message.getCommand() == HELLO) {
+                    negotiate(message);
+                } else if (message.getCommand() == RESUME) {
+                    resume(message);
+                } else {
+                    authorize(message);
                 }
+            } else {
+                parseMessage(message);
             }
-        });
-        handlerThread.start();
+        } catch (RuntimeException e) {
+            // a malformed message must not take down the connection, let alone the event loop
+            System.out.println("Failed to handle " + message + ": " + e);
+            send(ERROR_MESSAGE, "Invalid message");
+        }
+    }
+
+    private void negotiate(Message message) {
+        ProtocolVersion version = ProtocolVersion.negotiate(message.getFields());
+        send(HELLO, String.valueOf(version.getVersion()));
+        protocol = version;
+        System.out.println("Negotiated protocol version " + version.getVersion());
+    }
+
+    private void onAuthTimeout() {
+        synchronized (mon) {
+            if (user == null) {
+                System.out.println("Auth timeout, closing connection");
+                close();
+            }
+        }
+    }
+
+    // the timer thread only hands expired deadlines over, closing a connection may block on the server
+    private Timeout schedule(Runnable task, long delay) {
+        return server.getTimer().schedule(() -> server.getExecutor().execute(task), delay, TimeUnit.MILLISECONDS);
+    }
+
+    // clients that never ping (legacy text clients) are never closed for being idle
+    private void onHeartbeat() {
+        if (idleTimeout > 0 && heartbeats.compareAndSet(false, true)) {
+            scheduleIdleCheck(idleTimeout);
+        }
+    }
+
+    private void scheduleIdleCheck(long delay) {
+        idleDeadline = schedule(this::onIdleCheck, delay);
+    }
+
+    private void onIdleCheck() {
+        long idle = System.currentTimeMillis() - lastActivity;
+        if (idle >= idleTimeout) {
+            System.out.println("Idle timeout, closing connection with client: " + user);
+            close();
+        } else if (!isClosed()) {
+            scheduleIdleCheck(idleTimeout - idle);
+        }
     }
 
-    private void parseMessage(String message) {
-        String[] split = message.split(REGEX);
-        Command command = Command.getByCommand(split[0]);
+    private void cancelTimeouts() {
+        if (authDeadline != null) {
+            authDeadline.cancel();
+        }
+        if (idleDeadline != null) {
+            idleDeadline.cancel();
+        }
+    }
 
-        switch (command) {
-            case BROADCAST_MESSAGE -> server.broadcast(user, split[1]);
-            case PRIVATE_MESSAGE -> server.sendPrivateMessage(user, split[1], split[2]);
-            case CHANGE_NICK -> changeNick(split[1]);
+    protected void onDisconnect() {
+        cancelTimeouts();
+        ServerMetrics.getInstance().connectionClosed();
+        System.out.println("Connection broken with client: " + user);
+        if (user != null) {
+            server.removeHandler(this);
+        }
+    }
+
+    private void parseMessage(Message message) {
+        switch (message.getCommand()) {
+            case BROADCAST_MESSAGE -> server.broadcast(this, message.getField(0));
+            case PRIVATE_MESSAGE -> server.sendPrivateMessage(this, message.getField(0), message.getField(1));
+            case CHANGE_NICK -> changeNick(message.getField(0));
+            case PRESENCE_SYNC -> server.sendPresenceSnapshot(this);
+            case HISTORY -> server.sendHistory(this, message);
+            case JOIN_ROOM -> server.joinRoom(this, message.getField(0));
+            case LEAVE_ROOM -> server.leaveRoom(this, message.getField(0));
+            case ROOM_MESSAGE -> server.sendRoomMessage(this, message.getField(0), message.getField(1));
+            case STATS -> server.sendStats(this);
             default -> System.out.println("Unknown message " + message);
         }
     }
 
     private void changeNick(String newNick) {
-       try {
-          server.getUserService().changeNick(user, newNick);
-          user = newNick;
-          server.updateHandlerUsername();
-          send(CHANGE_NICK_OK.getCommand() + REGEX + newNick);
-        } catch (NickAlreadyIsBusyException e) {
-           send(ERROR_MESSAGE.getCommand() + REGEX + "This nickname already in use");
-       }
+        if (!nickChangePending.compareAndSet(false, true)) {
+            send(ERROR_MESSAGE, "Nickname change already in progress");
+            return;
+        }
+        String oldNick = user;
+        server.getAuthService().changeNick(oldNick, newNick)
+                .whenComplete((nick, e) -> {
+                    try {
+                        onNickChanged(oldNick, newNick, e);
+                    } finally {
+                        nickChangePending.set(false);
+                    }
+                });
     }
 
-    private void authorize() {
-        System.out.println("Authorizing");
-
-        new Thread(() -> {
-            try {
-                Thread.sleep(authTimeout);
-                synchronized (mon) {
-                    if (user == null) {
-                        socket.close();
+    private void onNickChanged(String oldNick, String newNick, Throwable failure) {
+        Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+        if (cause instanceof NickAlreadyIsBusyException) {
+            send(ERROR_MESSAGE, "This nickname already in use");
+        } else if (cause instanceof ServerBusyException) {
+            send(ERROR_MESSAGE, cause.getMessage());
+        } else if (cause != null) {
+            cause.printStackTrace();
+            send(ERROR_MESSAGE, "Nickname change failed");
+        } else {
+            user = newNick;
+            if (!server.updateHandlerUsername(this, oldNick)) {
+                send(ERROR_MESSAGE, "This nickname already in use");
+                server.getAuthService().changeNick(newNick, oldNick).whenComplete((nick, e) -> {
+                    if (e != null) {
+                        System.out.println("Failed to restore nickname " + oldNick + ": " + e.getMessage());
                     }
-                }
-            } catch (InterruptedException | IOException e) {
-                e.printStackTrace();
+                });
+                return;
             }
-        }).start();
+            send(CHANGE_NICK_OK, newNick, server.getSessionTokens().issue(login, newNick, credentialStamp));
+        }
+    }
 
-        try {
-            while (!socket.isClosed()) {
-                String msg = in.readUTF();
-                if (msg.startsWith(AUTH_MESSAGE.getCommand())) {
-                    String[] parsed = msg.split(REGEX);
-                    String response = "";
-                    String nickname = null;
-                    String login = parsed[1];
-                    String password = parsed[2];
+    private void authorize(Message message) {
+        if (message.getCommand() != AUTH_MESSAGE) {
+            return;
+        }
+        String login = message.getField(0);
+        String password = message.getField(1);
+        if (!authPending.compareAndSet(false, true)) {
+            send(ERROR_MESSAGE, "Authorization already in progress");
+            return;
+        }
+        System.out.println("Authorizing");
 
+        String stamp = server.getSessionTokens().credentialStamp(password);
+        server.getAuthService().authenticate(login, password)
+                .thenCompose(server::claimNick)
+                .whenComplete((nickname, e) -> {
                     try {
-                        nickname = server.getUserService().authenticate(login, password);
-                    } catch (WrongCredentialsException e) {
-                        response = ERROR_MESSAGE.getCommand() + REGEX + e.getMessage();
-                        System.out.println("Wrong credentials: " + login);
+                        onAuthenticated(login, stamp, nickname, e, false);
+                    } finally {
+                        authPending.set(false);
                     }
-                    
-                    if (server.isUserAlreadyOnline(nickname)) {
-                        response = ERROR_MESSAGE.getCommand() + REGEX + "This client already connected";
-                        System.out.println("Already connected");
+                });
+    }
+
+    private void resume(Message message) {
+        String value = message.getField(0);
+        if (!authPending.compareAndSet(false, true)) {
+            send(ERROR_MESSAGE, "Authorization already in progress");
+            return;
+        }
+        Optional<SessionToken> token = server.getSessionTokens().verify(value);
+        if (token.isEmpty()) {
+            System.out.println("Session token rejected");
+            send(ERROR_MESSAGE, SESSION_EXPIRED);
+            authPending.set(false);
+            return;
+        }
+        System.out.println("Resuming session");
+        SessionToken session = token.get();
+        server.getAuthService().findUser(session.getLogin())
+                .thenApply(user -> {
+                    if (user.isEmpty() || !server.getSessionTokens().isCurrent(session, user.get())) {
+                        throw new WrongCredentialsException(SESSION_EXPIRED);
                     }
-                    
-                    if (!response.equals("")) {
-                        send(response);
-                    } else {
-                        System.out.println("Auth ok");
-                        synchronized (mon) {
-                            this.user = nickname;
-                        }
-                        send(AUTH_OK.getCommand() + REGEX + login + REGEX + nickname);
-                        server.addHandler(this);
-                        break;
+                    return session.getNick();
+                })
+                .thenCompose(server::claimNick)
+                .whenComplete((nickname, e) -> {
+                    try {
+                        onAuthenticated(session.getLogin(), session.getCredentialStamp(), nickname, e, true);
+                    } finally {
+                        authPending.set(false);
                     }
+                });
+    }
+
+    private void onAuthenticated(String login, String stamp, String nickname, Throwable failure, boolean resumed) {
+        String error = null;
+        Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+
+        if (cause instanceof WrongCredentialsException || cause instanceof ServerBusyException
+                || cause instanceof AlreadyConnectedException) {
+            error = cause.getMessage();
+            System.out.println("Auth failed: " + login + ", " + error);
+        } else if (cause != null) {
+            error = "Authorization failed";
+            cause.printStackTrace();
+        } else if (resumed && server.isUserAlreadyOnline(nickname)) {
+            System.out.println("Replacing stale session of " + nickname);
+            server.evictSession(nickname);
+        } else if (server.isUserAlreadyOnline(nickname)) {
+            error = "This client already connected";
+            System.out.println("Already connected");
+        }
+
+        if (error != null) {
+            send(ERROR_MESSAGE, error);
+        } else {
+            System.out.println("Auth ok");
+            synchronized (mon) {
+                if (isClosed()) {
+                    server.releaseNick(nickname);
+                    return;
+                }
+                this.user = nickname;
+                this.login = login;
+                this.credentialStamp = stamp;
+            }
+            authDeadline.cancel();
+            Frame authOk = Frame.of(AUTH_OK, login, nickname, server.getSessionTokens().issue(login, nickname, stamp));
+            if (!server.addHandler(this, authOk)) {
+                synchronized (mon) {
+                    this.user = null;
+                    this.login = null;
                 }
+                server.releaseNick(nickname);
+                send(ERROR_MESSAGE, "This client already connected");
+                close();
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
     }
 
-    public void send(String msg) {
-        try {
-            out.writeUTF(msg);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    public String getUser() {
+        return user;
     }
 
-    public Thread getHandlerThread() {
-        return handlerThread;
+    void restoreUser(String nick) {
+        user = nick;
     }
 
-    public String getUser() {
-        return user;
+    public String getLogin() {
+        return login;
+    }
+
+    public boolean isBinaryProtocol() {
+        return protocol != ProtocolVersion.TEXT;
+    }
+
+    public Set<String> getRooms() {
+        return Collections.unmodifiableSet(rooms);
+    }
+
+    void joinedRoom(String room) {
+        rooms.add(room);
+    }
+
+    boolean leftRoom(String room) {
+        return rooms.remove(room);
     }
 }
@@ -1,105 +1,629 @@
 package ru.gb.may_chat.server;
 
+import ru.gb.may_chat.enums.Command;
 import ru.gb.may_chat.props.PropertyReader;
+import ru.gb.may_chat.protocol.Frame;
+import ru.gb.may_chat.protocol.Message;
+import ru.gb.may_chat.protocol.TextCodec;
+import ru.gb.may_chat.server.cluster.ClusterNode;
+import ru.gb.may_chat.server.cluster.PeerAddress;
+import ru.gb.may_chat.server.dao.OfflineMessageDao;
+import ru.gb.may_chat.server.enums.ServerMode;
+import ru.gb.may_chat.server.history.LogRecord;
+import ru.gb.may_chat.server.history.MessageLog;
+import ru.gb.may_chat.server.history.RecentMessages;
+import ru.gb.may_chat.server.metrics.ServerMetrics;
+import ru.gb.may_chat.server.model.OfflineMessage;
+import ru.gb.may_chat.server.nio.NioServer;
+import ru.gb.may_chat.server.offline.OfflineQueue;
+import ru.gb.may_chat.server.offline.OfflineQueue.StoreResult;
+import ru.gb.may_chat.server.presence.PresenceAggregator;
+import ru.gb.may_chat.server.presence.PresenceTracker;
+import ru.gb.may_chat.server.room.Room;
+import ru.gb.may_chat.server.room.RoomRegistry;
+import ru.gb.may_chat.server.service.AsyncUserService;
 import ru.gb.may_chat.server.service.UserService;
+import ru.gb.may_chat.server.service.impl.BoundedAsyncUserService;
+import ru.gb.may_chat.server.session.SessionRegistry;
+import ru.gb.may_chat.server.session.SessionTokenService;
+import ru.gb.may_chat.server.timer.HashedWheelTimer;
 
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
-import static ru.gb.may_chat.constants.MessageConstants.REGEX;
 import static ru.gb.may_chat.enums.Command.BROADCAST_MESSAGE;
-import static ru.gb.may_chat.enums.Command.LIST_USERS;
+import static ru.gb.may_chat.enums.Command.ERROR_MESSAGE;
+import static ru.gb.may_chat.enums.Command.HISTORY;
+import static ru.gb.may_chat.enums.Command.JOIN_ROOM;
+import static ru.gb.may_chat.enums.Command.LEAVE_ROOM;
+import static ru.gb.may_chat.enums.Command.REPLAY;
+import static ru.gb.may_chat.enums.Command.ROOM_MESSAGE;
 import static ru.gb.may_chat.enums.Command.PRIVATE_MESSAGE;
+import static ru.gb.may_chat.enums.Command.STATS;
 
 public class Server {
     private final int port;
-    private List<Handler> handlers;
+    private final ServerMode mode;
+    private final ExecutorService executor;
+    private final HashedWheelTimer timer;
+    private final SessionRegistry sessions;
+    private final SessionTokenService sessionTokens;
+    private final PresenceTracker presence;
+    private final PresenceAggregator presenceAggregator;
+    private final MessageLog messageLog;
+    private final int historyMaxBatch;
+    private final ThreadPoolExecutor historyReaders;
+    private final RecentMessages recentMessages;
+    private final int historyReplaySize;
+    private final RoomRegistry rooms;
+    private final int roomMaxJoined;
+    private final ClusterNode cluster;
+    private final OfflineQueue offlineQueue;
+    private final ServerMetrics metrics = ServerMetrics.getInstance();
+    private final Set<String> adminLogins;
 
     private UserService userService;
+    private final AsyncUserService authService;
 
     public Server(UserService userService) {
+        this(userService, ServerMode.BLOCKING);
+    }
+
+    public Server(UserService userService, ServerMode mode) {
         this.userService = userService;
-        this.handlers = new ArrayList<>();
+        this.authService = new BoundedAsyncUserService(
+                userService,
+                PropertyReader.getInstance().getAuthWorkers(),
+                PropertyReader.getInstance().getAuthQueueCapacity()
+        );
+        this.mode = mode;
+        this.sessions = new SessionRegistry();
+        this.sessionTokens = SessionTokenService.create(
+                PropertyReader.getInstance().getSessionTokenSecret(),
+                Path.of(PropertyReader.getInstance().getSessionTokenSecretFile()),
+                PropertyReader.getInstance().getSessionTokenTtl()
+        );
+        this.presence = new PresenceTracker(sessions);
         port = PropertyReader.getInstance().getPort();
+        executor = PropertyReader.getInstance().getExecutorStrategy().newExecutor("handler");
+        timer = new HashedWheelTimer(
+                "connection-timer",
+                PropertyReader.getInstance().getTimerTick(),
+                TimeUnit.MILLISECONDS,
+                PropertyReader.getInstance().getTimerWheelSize()
+        );
+        presenceAggregator = new PresenceAggregator(
+                presence, timer, executor, PropertyReader.getInstance().getPresenceWindow());
+        PropertyReader prop = PropertyReader.getInstance();
+        messageLog = prop.isHistoryEnabled()
+                ? new MessageLog(
+                        Path.of(prop.getHistoryDir()),
+                        prop.getHistorySegmentSize(),
+                        prop.getHistoryIndexInterval(),
+                        prop.getHistoryRetentionMs(),
+                        prop.getHistoryRetentionBytes(),
+                        prop.getHistoryMaxScan())
+                : null;
+        historyMaxBatch = prop.getHistoryMaxBatch();
+        historyReaders = messageLog != null
+                ? newHistoryReaders(prop.getHistoryReaders(), prop.getHistoryReadQueueCapacity())
+                : null;
+        recentMessages = new RecentMessages(prop.getHistoryRecentSize());
+        historyReplaySize = prop.getHistoryReplaySize();
+        rooms = new RoomRegistry(recentMessages::remove);
+        roomMaxJoined = prop.getRoomMaxJoined();
+        cluster = prop.isClusterEnabled()
+                ? new ClusterNode(
+                        this,
+                        prop.getClusterNodeId(),
+                        prop.getClusterBindAddress(),
+                        prop.getClusterPort(),
+                        prop.getClusterSecret(),
+                        PeerAddress.parseList(prop.getClusterPeers()),
+                        prop.getClusterVirtualNodes(),
+                        prop.getClusterReconnectInterval(),
+                        prop.getClusterClaimTimeout(),
+                        prop.getClusterQueueCapacity())
+                : null;
+        adminLogins = Set.copyOf(Arrays.stream(prop.getAdminLogins().split(","))
+                .map(String::trim)
+                .filter(login -> !login.isEmpty())
+                .toList());
+        offlineQueue = prop.isOfflineEnabled()
+                ? new OfflineQueue(
+                        new OfflineMessageDao(),
+                        userService::isNickExists,
+                        prop.getOfflineMaxPerUser(),
+                        prop.getOfflineTtl(),
+                        // a page is never dropped by the outbound queue, so it has to fit with room to spare
+                        Math.max(1, Math.min(prop.getOfflineBatchSize(), prop.getOutboundQueueCapacity() / 2)),
+                        prop.getOfflineQueueCapacity(),
+                        prop.getOfflinePurgeInterval())
+                : null;
     }
 
     public void start() {
+        try {
+            userService.start();
+            authService.start();
+            if (messageLog != null) {
+                messageLog.start();
+            }
+            if (offlineQueue != null) {
+                offlineQueue.start();
+            }
+            timer.start();
+            if (PropertyReader.getInstance().isMetricsJmxEnabled()) {
+                metrics.registerMBeans();
+            }
+            if (cluster != null) {
+                cluster.start();
+            }
+            switch (mode) {
+                case BLOCKING -> startBlocking();
+                case NIO -> new NioServer(this, port, getEventLoopCount()).start();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            shutdown();
+        }
+    }
+
+    private void startBlocking() throws IOException {
         try (ServerSocket serverSocket = new ServerSocket(port)) {
             System.out.println("Server start!");
-            userService.start();
             while (true) {
                 System.out.println("Waiting for connection......");
                 Socket socket = serverSocket.accept();
                 System.out.println("Client connected");
-                Handler handler = new Handler(socket, this);
+                Handler handler = new SocketHandler(socket, this);
                 handler.handle();
             }
-        } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
-            shutdown();
         }
     }
 
-    public void broadcast(String from, String message) {
-        String msg = BROADCAST_MESSAGE.getCommand() + REGEX + String.format("[%s]: %s", from, message);
-        for (Handler handler : handlers) {
-            handler.send(msg);
+    private int getEventLoopCount() {
+        int eventLoops = PropertyReader.getInstance().getNioEventLoops();
+        return eventLoops > 0 ? eventLoops : Runtime.getRuntime().availableProcessors();
+    }
+
+    public void broadcast(Handler sender, String message) {
+        String from = sender.getUser();
+        String text = "[" + from + "]: " + message;
+        if (!fitsAllProtocols(sender, BROADCAST_MESSAGE, text)) {
+            return;
+        }
+        deliverBroadcast(from, text);
+        if (cluster != null) {
+            cluster.relayBroadcast(from, text);
+        }
+    }
+
+    // text clients cannot receive a frame over 64K, so such messages are refused before they are fanned out
+    private boolean fitsAllProtocols(Handler sender, Command command, String... fields) {
+        if (TextCodec.fits(Message.of(command, fields))) {
+            return true;
+        }
+        sender.send(ERROR_MESSAGE, "Message is too long");
+        return false;
+    }
+
+    public void deliverBroadcast(String from, String text) {
+        Frame frame = Frame.of(BROADCAST_MESSAGE, text);
+        recentMessages.addBroadcast(frame);
+        long start = System.nanoTime();
+        for (Handler handler : sessions.handlers()) {
+            handler.send(frame);
+        }
+        metrics.getBroadcastFanOut().recordSince(start);
+        if (messageLog != null) {
+            messageLog.append(BROADCAST_MESSAGE, from, null, text);
+        }
+    }
+
+    public void sendPrivateMessage(Handler sender, String to, String message) {
+        String from = sender.getUser();
+        String text = "[" + from + "]: " + message;
+        if (!fitsAllProtocols(sender, PRIVATE_MESSAGE, text)) {
+            return;
+        }
+        Optional<Handler> recipient = sessions.find(to);
+        if (recipient.isPresent()) {
+            recipient.get().send(PRIVATE_MESSAGE, text);
+        } else if (cluster == null || !cluster.relayPrivateMessage(from, to, text)) {
+            storeOffline(sender, from, to, text);
+            return;
+        }
+        if (messageLog != null) {
+            messageLog.append(PRIVATE_MESSAGE, from, to, text);
+        }
+    }
+
+    private void storeOffline(Handler sender, String from, String to, String text) {
+        if (offlineQueue == null) {
+            sender.send(ERROR_MESSAGE, "User " + to + " is offline");
+            return;
+        }
+        if (!offlineQueue.offer(from, to, text, result -> onOfflineStored(sender, from, to, text, result))) {
+            sender.send(ERROR_MESSAGE, "Server is busy, try again later");
+        }
+    }
+
+    private void onOfflineStored(Handler sender, String from, String to, String text, StoreResult result) {
+        switch (result) {
+            case STORED -> {
+                if (messageLog != null) {
+                    messageLog.append(PRIVATE_MESSAGE, from, to, text);
+                }
+                // the recipient may have logged in while the message was being written
+                sessions.find(to).ifPresent(this::drainOfflineMessages);
+            }
+            case UNKNOWN_RECIPIENT -> {
+                if (sender != null) {
+                    sender.send(ERROR_MESSAGE, "User " + to + " not found");
+                }
+            }
+            case FAILED -> {
+                if (sender != null) {
+                    sender.send(ERROR_MESSAGE, "Failed to store message for " + to);
+                }
+            }
+        }
+    }
+
+    public void deliverPrivateMessage(String from, String to, String text) {
+        Optional<Handler> recipient = sessions.find(to);
+        if (recipient.isEmpty()) {
+            if (offlineQueue != null) {
+                offlineQueue.offer(from, to, text, stored -> onOfflineStored(null, from, to, text, stored));
+            }
+            return;
+        }
+        recipient.get().send(PRIVATE_MESSAGE, text);
+        if (messageLog != null) {
+            messageLog.append(PRIVATE_MESSAGE, from, to, text);
+        }
+    }
+
+    // serialized with removeHandler, so a join racing a disconnect cannot leave a closed handler in the room
+    public synchronized void joinRoom(Handler handler, String name) {
+        if (!RoomRegistry.isValidName(name)) {
+            handler.send(ERROR_MESSAGE, "Invalid room name");
+            return;
+        }
+        if (handler.isClosed() || handler.getRooms().contains(name)) {
+            return;
+        }
+        if (handler.getRooms().size() >= roomMaxJoined) {
+            handler.send(ERROR_MESSAGE, "Too many rooms joined");
+            return;
+        }
+        rooms.join(name, handler);
+        handler.joinedRoom(name);
+        handler.send(JOIN_ROOM, name);
+        replayRoom(handler, name);
+    }
+
+    public synchronized void leaveRoom(Handler handler, String name) {
+        if (handler.leftRoom(name)) {
+            rooms.leave(name, handler);
+            handler.send(LEAVE_ROOM, name);
+        }
+    }
+
+    private void leaveAllRooms(Handler handler) {
+        for (String name : handler.getRooms()) {
+            if (handler.leftRoom(name)) {
+                rooms.leave(name, handler);
+            }
+        }
+    }
+
+    public void sendRoomMessage(Handler handler, String name, String message) {
+        Room room = handler.getRooms().contains(name) ? rooms.find(name).orElse(null) : null;
+        if (room == null) {
+            handler.send(ERROR_MESSAGE, "You are not a member of #" + name);
+            return;
+        }
+        String text = "[" + handler.getUser() + "]: " + message;
+        if (!fitsAllProtocols(handler, ROOM_MESSAGE, name, text)) {
+            return;
+        }
+        deliverRoomMessage(room, handler.getUser(), text);
+        if (cluster != null) {
+            cluster.relayRoomMessage(name, handler.getUser(), text);
+        }
+    }
+
+    public void deliverRoomMessage(String name, String from, String text) {
+        rooms.find(name).ifPresent(room -> deliverRoomMessage(room, from, text));
+    }
+
+    private void deliverRoomMessage(Room room, String from, String text) {
+        Frame frame = Frame.of(ROOM_MESSAGE, room.getName(), text);
+        recentMessages.add(room.getName(), frame);
+        room.send(frame);
+        if (messageLog != null) {
+            messageLog.append(ROOM_MESSAGE, from, room.getName(), text);
+        }
+    }
+
+    private static ThreadPoolExecutor newHistoryReaders(int workers, int queueCapacity) {
+        AtomicLong counter = new AtomicLong();
+        return new ThreadPoolExecutor(
+                workers, workers,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    Thread thread = new Thread(task, "history-reader-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    // reads hit the disk, so they run on the history readers rather than the connection's I/O thread
+    public void sendHistory(Handler handler, Message request) {
+        if (messageLog == null) {
+            handler.send(ERROR_MESSAGE, "History is disabled");
+            return;
+        }
+        String user = handler.getUser();
+        Set<String> joined = Set.copyOf(handler.getRooms());
+        Predicate<LogRecord> visible = record -> record.isVisibleTo(user, joined);
+        Runnable read;
+        try {
+            String mode = request.getFieldCount() > 0 ? request.getField(0) : "";
+            int limit = request.getFieldCount() > 2 ? Integer.parseInt(request.getField(2)) : historyMaxBatch;
+            int max = Math.max(0, Math.min(limit, historyMaxBatch));
+            read = switch (mode) {
+                case "last" -> {
+                    int count = Math.max(0, Math.min(Integer.parseInt(request.getField(1)), historyMaxBatch));
+                    yield () -> handler.send(HISTORY, readLast(count, visible));
+                }
+                case "since" -> {
+                    long offset = Long.parseLong(request.getField(1));
+                    yield () -> handler.send(HISTORY, readSince(offset, max, visible));
+                }
+                default -> throw new IllegalArgumentException("Unknown history mode: " + mode);
+            };
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            handler.send(ERROR_MESSAGE, "Invalid history request");
+            return;
+        }
+        try {
+            historyReaders.execute(() -> {
+                try {
+                    read.run();
+                } catch (RuntimeException e) {
+                    System.err.println("History read failed: " + e.getMessage());
+                    handler.send(ERROR_MESSAGE, "Invalid history request");
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            handler.send(ERROR_MESSAGE, "Server is busy, try again later");
+        }
+    }
+
+    private String[] readLast(int count, Predicate<LogRecord> visible) {
+        long end = messageLog.getNextOffset();
+        return historyFields(end, messageLog.readLast(count, visible));
+    }
+
+    // the first field is where to continue from; with a sparse filter the scan may stop short of the log end
+    private String[] readSince(long offset, int limit, Predicate<LogRecord> visible) {
+        long scanLimit = messageLog.getScanLimit(offset);
+        List<LogRecord> records = messageLog.readSince(offset, scanLimit, limit, visible);
+        long next = records.size() == limit && !records.isEmpty()
+                ? records.get(records.size() - 1).getOffset() + 1
+                : scanLimit;
+        return historyFields(next, records);
+    }
+
+    private static String[] historyFields(long next, List<LogRecord> records) {
+        List<String> fields = new ArrayList<>(records.size() * 4 + 1);
+        fields.add(String.valueOf(next));
+        for (LogRecord record : records) {
+            fields.add(String.valueOf(record.getOffset()));
+            fields.add(String.valueOf(record.getTimestamp()));
+            fields.add(record.getCommand().getCommand());
+            fields.add(record.getText());
         }
+        return fields.toArray(new String[0]);
     }
 
-    public void sendPrivateMessage(String from, String to, String message) {
-        String msg = PRIVATE_MESSAGE.getCommand() + REGEX + String.format("[%s]: %s", from, message);
-        handlers.stream()
-                .filter(it -> it.getUser().equals(to))
-                .findFirst()
-                .orElseThrow()
-                .send(msg);
+    public void sendStats(Handler handler) {
+        if (!adminLogins.contains(handler.getLogin())) {
+            handler.send(ERROR_MESSAGE, "Not allowed");
+            return;
+        }
+        handler.send(STATS, metrics.snapshot().toArray(new String[0]));
     }
 
     public UserService getUserService() {
         return userService;
     }
-    
-    public synchronized boolean isUserAlreadyOnline(String nick) {
-        for (Handler handler : handlers) {
-            if (handler.getUser().equals(nick)) {
-                return true;
-            }
+
+    public AsyncUserService getAuthService() {
+        return authService;
+    }
+
+    public SessionTokenService getSessionTokens() {
+        return sessionTokens;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    public HashedWheelTimer getTimer() {
+        return timer;
+    }
+
+    public boolean isUserAlreadyOnline(String nick) {
+        return sessions.isOnline(nick);
+    }
+
+    public CompletableFuture<String> claimNick(String nick) {
+        return cluster != null ? cluster.claim(nick) : CompletableFuture.completedFuture(nick);
+    }
+
+    public synchronized void releaseNick(String nick) {
+        if (cluster != null && !sessions.isOnline(nick)) {
+            cluster.userLeft(nick);
         }
-        return false;
     }
-    
-    public synchronized void addHandler(Handler handler) {
-        this.handlers.add(handler);
-        sendContacts();
+
+    public synchronized boolean addHandler(Handler handler, Frame authOk) {
+        if (!sessions.register(handler.getUser(), handler, () -> handler.send(authOk))) {
+            return false;
+        }
+        presence.sendSnapshot(handler);
+        replayBroadcasts(handler);
+        drainOfflineMessages(handler);
+        presenceAggregator.joined(handler.getUser());
+        if (cluster != null) {
+            cluster.userJoined(handler.getUser());
+        }
+        return true;
+    }
+
+    private void replayBroadcasts(Handler handler) {
+        if (historyReplaySize <= 0 || !handler.isBinaryProtocol()) {
+            return;
+        }
+        List<Frame> recent = recentMessages.latestBroadcasts(historyReplaySize);
+        List<Frame> frames = new ArrayList<>(recent.size() + 1);
+        frames.add(Frame.of(REPLAY, String.valueOf(recent.size())));
+        frames.addAll(recent);
+        handler.send(frames);
+    }
+
+    private void replayRoom(Handler handler, String room) {
+        if (historyReplaySize <= 0 || !handler.isBinaryProtocol()) {
+            return;
+        }
+        List<Frame> recent = recentMessages.latest(room, historyReplaySize);
+        if (recent.isEmpty()) {
+            return;
+        }
+        List<Frame> frames = new ArrayList<>(recent.size() + 1);
+        frames.add(Frame.of(REPLAY, String.valueOf(recent.size()), room));
+        frames.addAll(recent);
+        handler.send(frames);
+    }
+
+    private void drainOfflineMessages(Handler handler) {
+        if (offlineQueue == null) {
+            return;
+        }
+        offlineQueue.drain(handler.getUser(), handler, (messages, onWritten) -> {
+            List<Frame> frames = new ArrayList<>(messages.size());
+            for (OfflineMessage message : messages) {
+                frames.add(Frame.of(PRIVATE_MESSAGE, message.getText()));
+            }
+            return handler.sendGuaranteed(frames, onWritten);
+        });
     }
 
     public synchronized void removeHandler(Handler handler) {
-        this.handlers.remove(handler);
-        sendContacts();
+        leaveAllRooms(handler);
+        if (sessions.unregister(handler.getUser(), handler)) {
+            presenceAggregator.left(handler.getUser());
+            if (cluster != null) {
+                cluster.userLeft(handler.getUser());
+            }
+        }
     }
 
-    public synchronized void updateHandlerUsername() {
-        sendContacts();
+    public synchronized void evictSession(String nick) {
+        sessions.find(nick).ifPresent(handler -> {
+            removeHandler(handler);
+            handler.close();
+        });
     }
 
-    private void shutdown() {
-        userService.stop();
+    public synchronized boolean updateHandlerUsername(Handler handler, String oldNick) {
+        if (handler.isClosed()) {
+            // the connection dropped while the rename was in flight, so removeHandler looked up the new nick
+            if (sessions.unregister(oldNick, handler)) {
+                presenceAggregator.left(oldNick);
+                if (cluster != null) {
+                    cluster.userLeft(oldNick);
+                }
+            }
+            return true;
+        }
+        if (!sessions.rename(oldNick, handler.getUser(), handler)) {
+            // a session that renamed away from this nick in the database has not left it here yet
+            handler.restoreUser(oldNick);
+            return false;
+        }
+        presenceAggregator.renamed(oldNick, handler.getUser());
+        if (offlineQueue != null) {
+            offlineQueue.rename(oldNick, handler.getUser());
+        }
+        if (cluster != null) {
+            cluster.userRenamed(oldNick, handler.getUser());
+        }
+        return true;
     }
 
-    private void sendContacts() {
-       String contacts = handlers.stream()
-                .map(Handler::getUser)
-                .collect(Collectors.joining(REGEX));
-       String msg = LIST_USERS.getCommand() + REGEX + contacts;
+    public synchronized void remoteJoined(String nick) {
+        presenceAggregator.joined(nick);
+    }
 
-        for (Handler handler : handlers) {
-            handler.send(msg);
+    public synchronized void remoteLeft(String nick) {
+        if (!sessions.isOnline(nick)) {
+            presenceAggregator.left(nick);
         }
     }
+
+    public synchronized void remoteRenamed(String oldNick, String newNick) {
+        if (sessions.isOnline(oldNick)) {
+            presenceAggregator.joined(newNick);
+        } else {
+            presenceAggregator.renamed(oldNick, newNick);
+        }
+    }
+
+    public void sendPresenceSnapshot(Handler handler) {
+        presence.sendSnapshot(handler);
+    }
+
+    private void shutdown() {
+        if (cluster != null) {
+            cluster.stop();
+        }
+        timer.stop();
+        executor.shutdownNow();
+        if (historyReaders != null) {
+            historyReaders.shutdownNow();
+        }
+        authService.stop();
+        if (offlineQueue != null) {
+            offlineQueue.stop();
+        }
+        if (messageLog != null) {
+            messageLog.stop();
+        }
+        userService.stop();
+    }
 }
@@ -0,0 +1,102 @@
+package ru.gb.may_chat.server;
+
+import ru.gb.may_chat.server.metrics.ServerMetrics;
+import ru.gb.may_chat.server.outbound.QueuedFrame;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class SocketHandler extends Handler {
+    private Socket socket;
+    private DataOutputStream out;
+    private DataInputStream in;
+    private final AtomicBoolean writerScheduled = new AtomicBoolean();
+    private final List<QueuedFrame> awaitingFlush = new ArrayList<>();
+
+    public SocketHandler(Socket socket, Server server) {
+        super(server);
+        try {
+            this.socket = socket;
+            this.in = new DataInputStream(socket.getInputStream());
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            System.out.println("Handler created");
+        } catch (IOException e) {
+            System.err.println("Connection problems with user: " + getUser());
+        }
+    }
+
+    @Override
+    protected void start() {
+        server.getExecutor().execute(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted() && !socket.isClosed()) {
+                    onMessage(protocol.getCodec().read(in));
+                }
+            } catch (IOException e) {
+                System.out.println("Read failed: " + e.getMessage());
+            } finally {
+                close();
+                onDisconnect();
+            }
+        });
+    }
+
+    @Override
+    protected void flush() {
+        if (writerScheduled.compareAndSet(false, true)) {
+            server.getExecutor().execute(this::drainOutbound);
+        }
+    }
+
+    private void drainOutbound() {
+        try {
+            do {
+                QueuedFrame frame;
+                long bytes = 0;
+                while ((frame = outbound.poll()) != null) {
+                    try {
+                        frame.writeTo(out);
+                        bytes += frame.size();
+                        if (frame.awaitsWrite()) {
+                            awaitingFlush.add(frame);
+                        }
+                    } catch (IllegalArgumentException e) {
+                        dropUnencodable(e);
+                    }
+                }
+                out.flush();
+                ServerMetrics.getInstance().bytesSent(bytes);
+                for (QueuedFrame flushed : awaitingFlush) {
+                    flushed.written();
+                }
+                awaitingFlush.clear();
+                writerScheduled.set(false);
+            } while (!outbound.isEmpty() && writerScheduled.compareAndSet(false, true));
+        } catch (IOException | RuntimeException e) {
+            awaitingFlush.clear();
+            writerScheduled.set(false);
+            close();
+        }
+    }
+
+    @Override
+    public void close() {
+        outbound.clear();
+        try {
+            socket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return socket.isClosed();
+    }
+}
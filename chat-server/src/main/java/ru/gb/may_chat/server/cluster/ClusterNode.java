@@ -0,0 +1,384 @@
+package ru.gb.may_chat.server.cluster;
+
+import ru.gb.may_chat.enums.PresenceEvent;
+import ru.gb.may_chat.protocol.Frame;
+import ru.gb.may_chat.protocol.Message;
+import ru.gb.may_chat.server.Server;
+import ru.gb.may_chat.server.error.AlreadyConnectedException;
+import ru.gb.may_chat.server.error.ServerBusyException;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static ru.gb.may_chat.enums.Command.PEER_AUTH;
+import static ru.gb.may_chat.enums.Command.PEER_BROADCAST;
+import static ru.gb.may_chat.enums.Command.PEER_CLAIM;
+import static ru.gb.may_chat.enums.Command.PEER_CLAIM_ACK;
+import static ru.gb.may_chat.enums.Command.PEER_HELLO;
+import static ru.gb.may_chat.enums.Command.PEER_PRESENCE;
+import static ru.gb.may_chat.enums.Command.PEER_PRIVATE;
+import static ru.gb.may_chat.enums.Command.PEER_ROOM;
+import static ru.gb.may_chat.enums.Command.PEER_SNAPSHOT;
+
+public class ClusterNode {
+    private static final int CONNECT_TIMEOUT = 1000;
+
+    private final Server server;
+    private final String nodeId;
+    private final String bindAddress;
+    private final int port;
+    private final PeerAuthenticator authenticator;
+    private final Map<String, PeerAddress> peers = new LinkedHashMap<>();
+    private final long reconnectInterval;
+    private final long claimTimeout;
+    private final int queueCapacity;
+
+    private final HashRing ring;
+    private final ConcurrentMap<String, PeerLink> links = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> locations = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, CompletableFuture<Boolean>> pendingClaims = new ConcurrentHashMap<>();
+    private final AtomicLong claimIds = new AtomicLong();
+
+    private volatile boolean running;
+    private ServerSocket serverSocket;
+
+    public ClusterNode(Server server, String nodeId, String bindAddress, int port, String secret,
+                       List<PeerAddress> peers, int virtualNodes, long reconnectInterval, long claimTimeout,
+                       int queueCapacity) {
+        if (nodeId == null || nodeId.isBlank()) {
+            throw new IllegalArgumentException("cluster.node.id is required in cluster mode");
+        }
+        this.server = server;
+        this.nodeId = nodeId;
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.authenticator = new PeerAuthenticator(secret);
+        for (PeerAddress peer : peers) {
+            if (!peer.getNodeId().equals(nodeId)) {
+                this.peers.put(peer.getNodeId(), peer);
+            }
+        }
+        this.reconnectInterval = reconnectInterval;
+        this.claimTimeout = claimTimeout;
+        this.queueCapacity = queueCapacity;
+        this.ring = new HashRing(virtualNodes);
+        this.ring.add(nodeId);
+    }
+
+    public void start() throws IOException {
+        serverSocket = new ServerSocket(port, 0, InetAddress.getByName(bindAddress));
+        running = true;
+        Thread listener = new Thread(this::acceptLoop, "cluster-listener");
+        listener.setDaemon(true);
+        listener.start();
+        Thread dialer = new Thread(this::dialLoop, "cluster-dialer");
+        dialer.setDaemon(true);
+        dialer.start();
+        System.out.println("Cluster node " + nodeId + " listening on " + bindAddress + ":" + port + ", peers: " + peers.values());
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        for (PeerLink link : links.values()) {
+            link.close();
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                PeerLink link = new PeerLink(socket, false, queueCapacity);
+                link.start(this);
+                closeIfUnauthenticated(link);
+            } catch (IOException e) {
+                if (running) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void closeIfUnauthenticated(PeerLink link) {
+        server.getTimer().schedule(() -> {
+            if (link.getNodeId() == null) {
+                link.close();
+            }
+        }, claimTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    // only the node with the smaller id dials, so each pair ends up with a single link
+    private void dialLoop() {
+        while (running) {
+            for (PeerAddress peer : peers.values()) {
+                if (nodeId.compareTo(peer.getNodeId()) < 0 && !links.containsKey(peer.getNodeId())) {
+                    dial(peer);
+                }
+            }
+            try {
+                Thread.sleep(reconnectInterval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void dial(PeerAddress peer) {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(peer.getHost(), peer.getPort()), CONNECT_TIMEOUT);
+            PeerLink link = new PeerLink(socket, true, queueCapacity);
+            link.setClaimedNodeId(peer.getNodeId());
+            link.setLocalNonce(authenticator.newNonce());
+            link.start(this);
+            link.send(Frame.of(PEER_HELLO, nodeId, link.getLocalNonce()));
+            closeIfUnauthenticated(link);
+        } catch (IOException e) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    void onPeerMessage(PeerLink link, Message message) {
+        if (message.getCommand() == PEER_HELLO) {
+            onHello(link, message);
+            return;
+        }
+        if (message.getCommand() == PEER_AUTH) {
+            onAuth(link, message);
+            return;
+        }
+        String peer = link.getNodeId();
+        if (peer == null) {
+            return;
+        }
+        switch (message.getCommand()) {
+            case PEER_SNAPSHOT -> {
+                for (String nick : message.getFields()) {
+                    locations.put(nick, peer);
+                    server.remoteJoined(nick);
+                }
+            }
+            case PEER_PRESENCE -> onPresence(peer, message);
+            case PEER_CLAIM -> link.send(Frame.of(PEER_CLAIM_ACK, message.getField(0),
+                    String.valueOf(claimLocally(message.getField(1), peer))));
+            case PEER_CLAIM_ACK -> {
+                CompletableFuture<Boolean> claim = pendingClaims.remove(Long.parseLong(message.getField(0)));
+                if (claim != null) {
+                    claim.complete(Boolean.parseBoolean(message.getField(1)));
+                }
+            }
+            case PEER_BROADCAST -> server.deliverBroadcast(message.getField(0), message.getField(1));
+            case PEER_PRIVATE -> server.deliverPrivateMessage(
+                    message.getField(0), message.getField(1), message.getField(2));
+            case PEER_ROOM -> server.deliverRoomMessage(
+                    message.getField(0), message.getField(1), message.getField(2));
+            default -> System.out.println("Unknown peer message " + message);
+        }
+    }
+
+    // the dialer sends its id and a nonce, the acceptor answers with its own nonce and a proof over both,
+    // and the dialer proves itself in PEER_AUTH; no other peer message is accepted before that
+    private void onHello(PeerLink link, Message message) {
+        if (link.getNodeId() != null || link.getPeerNonce() != null) {
+            return;
+        }
+        String peer = message.getField(0);
+        if (!peers.containsKey(peer) || message.getFieldCount() < (link.isInitiator() ? 3 : 2)) {
+            reject(link, "Rejecting unknown cluster peer: " + peer);
+            return;
+        }
+        link.setPeerNonce(message.getField(1));
+        if (!link.isInitiator()) {
+            link.setClaimedNodeId(peer);
+            link.setLocalNonce(authenticator.newNonce());
+            link.send(Frame.of(PEER_HELLO, nodeId, link.getLocalNonce(), authenticator.proof(
+                    PeerAuthenticator.ACCEPTOR, nodeId, link.getPeerNonce(), link.getLocalNonce())));
+            return;
+        }
+        if (!peer.equals(link.getClaimedNodeId()) || !authenticator.verify(message.getField(2),
+                PeerAuthenticator.ACCEPTOR, peer, link.getLocalNonce(), link.getPeerNonce())) {
+            reject(link, "Rejecting cluster peer that failed authentication: " + peer);
+            return;
+        }
+        link.send(Frame.of(PEER_AUTH, authenticator.proof(
+                PeerAuthenticator.DIALER, nodeId, link.getPeerNonce(), link.getLocalNonce())));
+        link.setNodeId(peer);
+        onLinkUp(link);
+    }
+
+    private void onAuth(PeerLink link, Message message) {
+        String peer = link.getClaimedNodeId();
+        if (link.isInitiator() || link.getNodeId() != null || peer == null) {
+            return;
+        }
+        if (!authenticator.verify(message.getField(0),
+                PeerAuthenticator.DIALER, peer, link.getLocalNonce(), link.getPeerNonce())) {
+            reject(link, "Rejecting cluster peer that failed authentication: " + peer);
+            return;
+        }
+        link.setNodeId(peer);
+        onLinkUp(link);
+    }
+
+    private void reject(PeerLink link, String reason) {
+        System.out.println(reason);
+        link.close();
+    }
+
+    private synchronized void onLinkUp(PeerLink link) {
+        String peer = link.getNodeId();
+        if (links.putIfAbsent(peer, link) != null) {
+            link.close();
+            return;
+        }
+        ring.add(peer);
+        link.send(Frame.of(PEER_SNAPSHOT, localNicks()));
+        System.out.println("Cluster peer connected: " + peer);
+    }
+
+    void onLinkClosed(PeerLink link) {
+        String peer = link.getNodeId();
+        if (peer == null || !links.remove(peer, link)) {
+            return;
+        }
+        ring.remove(peer);
+        for (Map.Entry<String, String> entry : locations.entrySet()) {
+            if (entry.getValue().equals(peer) && locations.remove(entry.getKey(), peer)) {
+                server.remoteLeft(entry.getKey());
+            }
+        }
+        System.out.println("Cluster peer disconnected: " + peer);
+    }
+
+    private void onPresence(String peer, Message message) {
+        String nick = message.getField(1);
+        switch (PresenceEvent.getByEvent(message.getField(0))) {
+            case JOINED -> {
+                locations.put(nick, peer);
+                server.remoteJoined(nick);
+            }
+            case LEFT -> {
+                if (locations.remove(nick, peer)) {
+                    server.remoteLeft(nick);
+                }
+            }
+            case RENAMED -> {
+                String newNick = message.getField(2);
+                locations.remove(nick, peer);
+                locations.put(newNick, peer);
+                server.remoteRenamed(nick, newNick);
+            }
+        }
+    }
+
+    private boolean claimLocally(String nick, String node) {
+        String holder = locations.putIfAbsent(nick, node);
+        return holder == null || holder.equals(node);
+    }
+
+    public CompletableFuture<String> claim(String nick) {
+        String owner = ring.owner(nick);
+        if (owner == null || owner.equals(nodeId)) {
+            return claimLocally(nick, nodeId)
+                    ? CompletableFuture.completedFuture(nick)
+                    : CompletableFuture.failedFuture(new AlreadyConnectedException("This client already connected"));
+        }
+        PeerLink link = links.get(owner);
+        if (link == null) {
+            return CompletableFuture.failedFuture(new ServerBusyException("Server is busy, try again later"));
+        }
+        long id = claimIds.incrementAndGet();
+        CompletableFuture<Boolean> claim = new CompletableFuture<>();
+        pendingClaims.put(id, claim);
+        server.getTimer().schedule(() -> {
+            CompletableFuture<Boolean> expired = pendingClaims.remove(id);
+            if (expired != null) {
+                expired.completeExceptionally(new ServerBusyException("Server is busy, try again later"));
+                // the owner may still grant it; the release follows the claim on the same link
+                server.releaseNick(nick);
+            }
+        }, claimTimeout, TimeUnit.MILLISECONDS);
+        if (!link.send(Frame.of(PEER_CLAIM, String.valueOf(id), nick)) && pendingClaims.remove(id) != null) {
+            claim.completeExceptionally(new ServerBusyException("Server is busy, try again later"));
+        }
+        return claim.thenApply(granted -> {
+            if (!granted) {
+                throw new AlreadyConnectedException("This client already connected");
+            }
+            return nick;
+        });
+    }
+
+    public synchronized void userJoined(String nick) {
+        locations.put(nick, nodeId);
+        sendToPeers(Frame.of(PEER_PRESENCE, PresenceEvent.JOINED.getEvent(), nick));
+    }
+
+    public synchronized void userLeft(String nick) {
+        locations.remove(nick, nodeId);
+        sendToPeers(Frame.of(PEER_PRESENCE, PresenceEvent.LEFT.getEvent(), nick));
+    }
+
+    public synchronized void userRenamed(String oldNick, String newNick) {
+        locations.remove(oldNick, nodeId);
+        locations.put(newNick, nodeId);
+        sendToPeers(Frame.of(PEER_PRESENCE, PresenceEvent.RENAMED.getEvent(), oldNick, newNick));
+    }
+
+    public void relayBroadcast(String from, String text) {
+        sendToPeers(Frame.of(PEER_BROADCAST, from, text));
+    }
+
+    public boolean relayPrivateMessage(String from, String to, String text) {
+        String node = locations.get(to);
+        PeerLink link = node != null && !node.equals(nodeId) ? links.get(node) : null;
+        return link != null && link.send(Frame.of(PEER_PRIVATE, from, to, text));
+    }
+
+    public void relayRoomMessage(String room, String from, String text) {
+        sendToPeers(Frame.of(PEER_ROOM, room, from, text));
+    }
+
+    private void sendToPeers(Frame frame) {
+        for (PeerLink link : links.values()) {
+            link.send(frame);
+        }
+    }
+
+    private String[] localNicks() {
+        List<String> nicks = new ArrayList<>();
+        for (Map.Entry<String, String> entry : locations.entrySet()) {
+            if (entry.getValue().equals(nodeId)) {
+                nicks.add(entry.getKey());
+            }
+        }
+        return nicks.toArray(String[]::new);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+}
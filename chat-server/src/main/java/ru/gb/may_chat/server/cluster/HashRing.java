@@ -0,0 +1,68 @@
+package ru.gb.may_chat.server.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+public class HashRing {
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final int virtualNodes;
+    private final Set<String> nodes = new TreeSet<>();
+    private volatile NavigableMap<Long, String> ring = new TreeMap<>();
+
+    public HashRing(int virtualNodes) {
+        this.virtualNodes = Math.max(1, virtualNodes);
+    }
+
+    public synchronized void add(String node) {
+        if (nodes.add(node)) {
+            rebuild();
+        }
+    }
+
+    public synchronized void remove(String node) {
+        if (nodes.remove(node)) {
+            rebuild();
+        }
+    }
+
+    private void rebuild() {
+        NavigableMap<Long, String> next = new TreeMap<>();
+        for (String node : nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                next.putIfAbsent(hash(node + "#" + i), node);
+            }
+        }
+        ring = next;
+    }
+
+    public String owner(String key) {
+        NavigableMap<Long, String> current = ring;
+        if (current.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> entry = current.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : current.firstEntry().getValue();
+    }
+
+    private static long hash(String key) {
+        byte[] digest = DIGESTS.get().digest(key.getBytes(StandardCharsets.UTF_8));
+        long hash = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            hash = (hash << 8) | (digest[i] & 0xFF);
+        }
+        return hash;
+    }
+}
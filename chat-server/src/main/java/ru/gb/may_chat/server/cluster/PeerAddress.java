@@ -0,0 +1,56 @@
+package ru.gb.may_chat.server.cluster;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PeerAddress {
+    private final String nodeId;
+    private final String host;
+    private final int port;
+
+    public PeerAddress(String nodeId, String host, int port) {
+        this.nodeId = nodeId;
+        this.host = host;
+        this.port = port;
+    }
+
+    public static PeerAddress parse(String spec) {
+        int at = spec.indexOf('@');
+        int colon = spec.lastIndexOf(':');
+        if (at <= 0 || colon <= at + 1) {
+            throw new IllegalArgumentException("Invalid peer address: " + spec);
+        }
+        return new PeerAddress(
+                spec.substring(0, at),
+                spec.substring(at + 1, colon),
+                Integer.parseInt(spec.substring(colon + 1))
+        );
+    }
+
+    public static List<PeerAddress> parseList(String specs) {
+        List<PeerAddress> peers = new ArrayList<>();
+        for (String spec : specs.split(",")) {
+            if (!spec.isBlank()) {
+                peers.add(parse(spec.trim()));
+            }
+        }
+        return peers;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public String toString() {
+        return nodeId + "@" + host + ":" + port;
+    }
+}
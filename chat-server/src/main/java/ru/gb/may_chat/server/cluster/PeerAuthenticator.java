@@ -0,0 +1,55 @@
+package ru.gb.may_chat.server.cluster;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+class PeerAuthenticator {
+    static final String DIALER = "dialer";
+    static final String ACCEPTOR = "acceptor";
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final String SEPARATOR = "\n";
+    private static final int NONCE_SIZE = 16;
+
+    private final SecretKeySpec key;
+    private final SecureRandom random = new SecureRandom();
+
+    PeerAuthenticator(String secret) {
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException("cluster.secret is required in cluster mode");
+        }
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    }
+
+    String newNonce() {
+        byte[] nonce = new byte[NONCE_SIZE];
+        random.nextBytes(nonce);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(nonce);
+    }
+
+    // the role and both nonces are signed, so a proof can be neither replayed nor reflected back to its sender
+    String proof(String role, String nodeId, String challenge, String nonce) {
+        byte[] payload = String.join(SEPARATOR, role, nodeId, challenge, nonce).getBytes(StandardCharsets.UTF_8);
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(mac.doFinal(payload));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    boolean verify(String proof, String role, String nodeId, String challenge, String nonce) {
+        if (proof == null || challenge == null || nonce == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(
+                proof(role, nodeId, challenge, nonce).getBytes(StandardCharsets.US_ASCII),
+                proof.getBytes(StandardCharsets.US_ASCII));
+    }
+}
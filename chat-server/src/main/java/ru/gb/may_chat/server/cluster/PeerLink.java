@@ -0,0 +1,144 @@
+package ru.gb.may_chat.server.cluster;
+
+import ru.gb.may_chat.protocol.Codec;
+import ru.gb.may_chat.protocol.Frame;
+import ru.gb.may_chat.protocol.ProtocolVersion;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class PeerLink {
+    private static final ProtocolVersion PROTOCOL = ProtocolVersion.BINARY;
+
+    private final Socket socket;
+    private final boolean initiator;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final BlockingQueue<Frame> outbound;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile String nodeId;
+    private String claimedNodeId;
+    private String localNonce;
+    private String peerNonce;
+    private Thread writer;
+
+    PeerLink(Socket socket, boolean initiator, int queueCapacity) throws IOException {
+        this.socket = socket;
+        this.initiator = initiator;
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        this.outbound = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    void start(ClusterNode node) {
+        String name = socket.getInetAddress().getHostAddress() + ":" + socket.getPort();
+        writer = new Thread(this::writeLoop, "cluster-writer-" + name);
+        writer.setDaemon(true);
+        writer.start();
+        Thread reader = new Thread(() -> readLoop(node), "cluster-reader-" + name);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public boolean send(Frame frame) {
+        if (closed.get()) {
+            return false;
+        }
+        if (!outbound.offer(frame)) {
+            System.out.println("Cluster link overflow, dropping link to " + nodeId);
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    private void writeLoop() {
+        try {
+            while (!closed.get()) {
+                Frame frame = outbound.take();
+                do {
+                    frame.writeTo(out, PROTOCOL);
+                } while ((frame = outbound.poll()) != null);
+                out.flush();
+            }
+        } catch (IOException e) {
+            close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void readLoop(ClusterNode node) {
+        Codec codec = PROTOCOL.getCodec();
+        try {
+            while (!closed.get()) {
+                node.onPeerMessage(this, codec.read(in));
+            }
+        } catch (IOException e) {
+            System.out.println("Cluster link closed: " + (nodeId != null ? nodeId : e.getMessage()));
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        } finally {
+            close();
+            node.onLinkClosed(this);
+        }
+    }
+
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (writer != null) {
+            writer.interrupt();
+        }
+        outbound.clear();
+    }
+
+    public boolean isInitiator() {
+        return initiator;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    String getClaimedNodeId() {
+        return claimedNodeId;
+    }
+
+    void setClaimedNodeId(String claimedNodeId) {
+        this.claimedNodeId = claimedNodeId;
+    }
+
+    String getLocalNonce() {
+        return localNonce;
+    }
+
+    void setLocalNonce(String localNonce) {
+        this.localNonce = localNonce;
+    }
+
+    String getPeerNonce() {
+        return peerNonce;
+    }
+
+    void setPeerNonce(String peerNonce) {
+        this.peerNonce = peerNonce;
+    }
+}
@@ -0,0 +1,81 @@
+package ru.gb.may_chat.server.dao;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class ConnectionPool {
+    private static final String[] PRAGMAS = {
+            "PRAGMA journal_mode = WAL",
+            "PRAGMA synchronous = NORMAL",
+            "PRAGMA busy_timeout = 5000",
+            "PRAGMA temp_store = MEMORY",
+            "PRAGMA cache_size = -8000"
+    };
+
+    private final BlockingQueue<PooledConnection> idle;
+    private final List<PooledConnection> all;
+    private final long borrowTimeout;
+
+    public ConnectionPool(String url, int size, long borrowTimeout) throws SQLException {
+        this.idle = new ArrayBlockingQueue<>(size);
+        this.all = new ArrayList<>(size);
+        this.borrowTimeout = borrowTimeout;
+        for (int i = 0; i < size; i++) {
+            PooledConnection connection = new PooledConnection(open(url), this);
+            all.add(connection);
+            idle.add(connection);
+        }
+    }
+
+    private Connection open(String url) throws SQLException {
+        Connection connection = DriverManager.getConnection(url);
+        try (Statement statement = connection.createStatement()) {
+            for (String pragma : PRAGMAS) {
+                statement.execute(pragma);
+            }
+        }
+        return connection;
+    }
+
+    public PooledConnection borrow() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            PooledConnection connection = idle.poll(borrowTimeout, TimeUnit.MILLISECONDS);
+            if (connection == null) {
+                throw new SQLException("Timed out waiting for a database connection");
+            }
+            connection.borrowed(start);
+            return connection;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+    }
+
+    void release(PooledConnection connection) {
+        idle.offer(connection);
+    }
+
+    public void close() throws SQLException {
+        SQLException failure = null;
+        for (PooledConnection connection : all) {
+            try {
+                connection.closePhysical();
+            } catch (SQLException e) {
+                failure = e;
+            }
+        }
+        all.clear();
+        idle.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
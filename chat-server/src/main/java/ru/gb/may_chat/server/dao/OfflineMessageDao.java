@@ -0,0 +1,145 @@
+package ru.gb.may_chat.server.dao;
+
+import ru.gb.may_chat.props.PropertyReader;
+import ru.gb.may_chat.server.model.OfflineMessage;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public class OfflineMessageDao {
+    private static final String CREATE_TABLE =
+            "CREATE TABLE IF NOT EXISTS offline_message (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "recipient TEXT NOT NULL, " +
+                    "sender TEXT NOT NULL, " +
+                    "text TEXT NOT NULL, " +
+                    "created_at INTEGER NOT NULL)";
+    private static final String CREATE_INDEX =
+            "CREATE INDEX IF NOT EXISTS offline_message_recipient ON offline_message (recipient, id)";
+    private static final String INSERT_MESSAGE =
+            "INSERT INTO offline_message (recipient, sender, text, created_at) VALUES (?, ?, ?, ?)";
+    private static final String SELECT_BATCH =
+            "SELECT id, sender, text, created_at FROM offline_message " +
+                    "WHERE recipient = ? AND id > ? AND created_at >= ? ORDER BY id LIMIT ?";
+    private static final String DELETE_BY_ID =
+            "DELETE FROM offline_message WHERE id = ?";
+    private static final String DELETE_OVER_LIMIT =
+            "DELETE FROM offline_message WHERE recipient = ? AND id <= (" +
+                    "SELECT id FROM offline_message WHERE recipient = ? ORDER BY id DESC LIMIT 1 OFFSET ?)";
+    private static final String DELETE_EXPIRED =
+            "DELETE FROM offline_message WHERE created_at < ?";
+    private static final String UPDATE_RECIPIENT =
+            "UPDATE offline_message SET recipient = ? WHERE recipient = ?";
+
+    private ConnectionPool pool;
+
+    public void connect() throws ClassNotFoundException, SQLException {
+        Class.forName("org.sqlite.JDBC");
+        PropertyReader prop = PropertyReader.getInstance();
+        // only the offline queue thread uses this pool
+        pool = new ConnectionPool(prop.getDbUrl(), 1, prop.getDbPoolTimeout());
+        try (PooledConnection connection = pool.borrow()) {
+            connection.prepare(CREATE_TABLE).execute();
+            connection.prepare(CREATE_INDEX).execute();
+        }
+    }
+
+    public void close() throws SQLException {
+        pool.close();
+    }
+
+    public void insertAll(List<OfflineMessage> messages, Collection<String> recipients, int maxPerRecipient)
+            throws SQLException {
+        try (PooledConnection connection = pool.borrow()) {
+            connection.begin();
+            try {
+                PreparedStatement insert = connection.prepare(INSERT_MESSAGE);
+                for (OfflineMessage message : messages) {
+                    insert.setString(1, message.getRecipient());
+                    insert.setString(2, message.getSender());
+                    insert.setString(3, message.getText());
+                    insert.setLong(4, message.getCreatedAt());
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+                if (maxPerRecipient > 0) {
+                    PreparedStatement trim = connection.prepare(DELETE_OVER_LIMIT);
+                    for (String recipient : recipients) {
+                        trim.setString(1, recipient);
+                        trim.setString(2, recipient);
+                        trim.setInt(3, maxPerRecipient);
+                        trim.addBatch();
+                    }
+                    trim.executeBatch();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+
+    public List<OfflineMessage> findBatch(String recipient, long afterId, long notBefore, int limit)
+            throws SQLException {
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(SELECT_BATCH);
+            statement.setString(1, recipient);
+            statement.setLong(2, afterId);
+            statement.setLong(3, notBefore);
+            statement.setInt(4, limit);
+            List<OfflineMessage> messages = new ArrayList<>(limit);
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    messages.add(new OfflineMessage(
+                            result.getLong("id"),
+                            result.getString("sender"),
+                            recipient,
+                            result.getString("text"),
+                            result.getLong("created_at")
+                    ));
+                }
+            }
+            return messages;
+        }
+    }
+
+    public void deleteAll(List<OfflineMessage> messages) throws SQLException {
+        try (PooledConnection connection = pool.borrow()) {
+            connection.begin();
+            try {
+                PreparedStatement statement = connection.prepare(DELETE_BY_ID);
+                for (OfflineMessage message : messages) {
+                    statement.setLong(1, message.getId());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+
+    public int deleteExpired(long notBefore) throws SQLException {
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(DELETE_EXPIRED);
+            statement.setLong(1, notBefore);
+            return statement.executeUpdate();
+        }
+    }
+
+    public void updateRecipient(String oldNick, String newNick) throws SQLException {
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(UPDATE_RECIPIENT);
+            statement.setString(1, newNick);
+            statement.setString(2, oldNick);
+            statement.executeUpdate();
+        }
+    }
+}
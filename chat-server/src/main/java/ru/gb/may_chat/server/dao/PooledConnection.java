@@ -0,0 +1,65 @@
+package ru.gb.may_chat.server.dao;
+
+import ru.gb.may_chat.server.metrics.ServerMetrics;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+public class PooledConnection implements AutoCloseable {
+    private final Connection connection;
+    private final ConnectionPool pool;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+    private long borrowedAt;
+
+    PooledConnection(Connection connection, ConnectionPool pool) {
+        this.connection = connection;
+        this.pool = pool;
+    }
+
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+        } else {
+            statement.clearParameters();
+        }
+        return statement;
+    }
+
+    public void begin() throws SQLException {
+        connection.setAutoCommit(false);
+    }
+
+    public void commit() throws SQLException {
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    public void rollback() throws SQLException {
+        connection.rollback();
+        connection.setAutoCommit(true);
+    }
+
+    void borrowed(long nanos) {
+        borrowedAt = nanos;
+    }
+
+    // borrow-to-release time, i.e. pool wait plus the statements run on this connection
+    @Override
+    public void close() {
+        ServerMetrics.getInstance().getDbQueryLatency().recordSince(borrowedAt);
+        pool.release(this);
+    }
+
+    void closePhysical() throws SQLException {
+        for (PreparedStatement statement : statements.values()) {
+            statement.close();
+        }
+        statements.clear();
+        connection.close();
+    }
+}
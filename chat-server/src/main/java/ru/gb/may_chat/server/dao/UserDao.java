@@ -1,63 +1,146 @@
 package ru.gb.may_chat.server.dao;
 
+import ru.gb.may_chat.props.PropertyReader;
 import ru.gb.may_chat.server.model.User;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Optional;
 
 public class UserDao {
+    private static final String SELECT_NICK_BY_CREDENTIALS =
+            "SELECT nick FROM user WHERE login = ? AND password = ?";
+    private static final String SELECT_BY_NICK =
+            "SELECT login, password, nick FROM user WHERE nick = ?";
+    private static final String SELECT_BY_LOGIN =
+            "SELECT login, password, nick FROM user WHERE login = ?";
+    private static final String SELECT_NICK_EXISTS =
+            "SELECT 1 FROM user WHERE nick = ?";
+    private static final String SELECT_LOGIN_EXISTS =
+            "SELECT 1 FROM user WHERE login = ?";
+    private static final String UPDATE_NICK =
+            "UPDATE user SET nick = ? WHERE nick = ?";
+    private static final String UPDATE_PASSWORD =
+            "UPDATE user SET password = ? WHERE login = ? AND password = ?";
+    private static final String INSERT_USER =
+            "INSERT INTO user (login, password, nick) VALUES (?, ?, ?)";
+    private static final String DELETE_USER =
+            "DELETE FROM user WHERE login = ? AND password = ?";
 
-    private Connection connection;
+    private ConnectionPool pool;
 
     public void connect() throws ClassNotFoundException, SQLException {
         Class.forName("org.sqlite.JDBC");
-        connection = DriverManager.getConnection("jdbc:sqlite:chat-db");
+        PropertyReader prop = PropertyReader.getInstance();
+        pool = new ConnectionPool(prop.getDbUrl(), prop.getDbPoolSize(), prop.getDbPoolTimeout());
     }
 
     public void close() throws SQLException {
-        connection.close();
+        pool.close();
     }
 
     public Optional<String> getNickByLoginAndPassword(
             String login,
             String password
     ) throws SQLException {
-        var statement = connection.prepareStatement(
-                "SELECT * FROM user WHERE login = ? AND password = ?");
-        statement.setString(1, login);
-        statement.setString(2, password);
-        var result = statement.executeQuery();
-        if (result.next()) {
-            return Optional.of(result.getString("nick"));
-        } else {
-            return Optional.empty();
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(SELECT_NICK_BY_CREDENTIALS);
+            statement.setString(1, login);
+            statement.setString(2, password);
+            try (ResultSet result = statement.executeQuery()) {
+                if (result.next()) {
+                    return Optional.of(result.getString("nick"));
+                } else {
+                    return Optional.empty();
+                }
+            }
         }
     }
 
     public void updateNick(String oldNick, String newNick) throws SQLException {
-        var statement = connection.prepareStatement(
-                "UPDATE user SET nick = ? WHERE nick = ?");
-        statement.setString(1, newNick);
-        statement.setString(2, oldNick);
-        statement.execute();
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(UPDATE_NICK);
+            statement.setString(1, newNick);
+            statement.setString(2, oldNick);
+            statement.executeUpdate();
+        }
     }
 
     public boolean isNickExists(String nick) throws SQLException {
-        return findUserByNickname(nick).isPresent();
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(SELECT_NICK_EXISTS);
+            statement.setString(1, nick);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next();
+            }
+        }
+    }
+
+    public boolean isLoginExists(String login) throws SQLException {
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(SELECT_LOGIN_EXISTS);
+            statement.setString(1, login);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next();
+            }
+        }
+    }
+
+    public void insertUser(User user) throws SQLException {
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(INSERT_USER);
+            statement.setString(1, user.getLogin());
+            statement.setString(2, user.getPassword());
+            statement.setString(3, user.getNick());
+            statement.executeUpdate();
+        }
+    }
+
+    public boolean deleteUser(String login, String password) throws SQLException {
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(DELETE_USER);
+            statement.setString(1, login);
+            statement.setString(2, password);
+            return statement.executeUpdate() > 0;
+        }
+    }
+
+    public boolean updatePassword(String login, String oldPassword, String newPassword) throws SQLException {
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(UPDATE_PASSWORD);
+            statement.setString(1, newPassword);
+            statement.setString(2, login);
+            statement.setString(3, oldPassword);
+            return statement.executeUpdate() > 0;
+        }
     }
 
     public Optional<User> findUserByNickname(String nick) throws SQLException {
-        var statement = connection.prepareStatement(
-                "SELECT * FROM user WHERE nick = ?");
-        statement.setString(1, nick);
-        var result = statement.executeQuery();
-        if (result.next()) {
-            return Optional.of(buildUserFromResultSet(result));
-        } else {
-            return Optional.empty();
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(SELECT_BY_NICK);
+            statement.setString(1, nick);
+            try (ResultSet result = statement.executeQuery()) {
+                if (result.next()) {
+                    return Optional.of(buildUserFromResultSet(result));
+                } else {
+                    return Optional.empty();
+                }
+            }
+        }
+    }
+
+    public Optional<User> findUserByLogin(String login) throws SQLException {
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(SELECT_BY_LOGIN);
+            statement.setString(1, login);
+            try (ResultSet result = statement.executeQuery()) {
+                if (result.next()) {
+                    return Optional.of(buildUserFromResultSet(result));
+                } else {
+                    return Optional.empty();
+                }
+            }
         }
     }
 
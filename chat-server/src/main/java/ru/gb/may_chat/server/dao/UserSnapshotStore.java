@@ -0,0 +1,229 @@
+package ru.gb.may_chat.server.dao;
+
+import ru.gb.may_chat.server.model.User;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+public class UserSnapshotStore {
+    private static final int SNAPSHOT_MAGIC = 0x55534e50;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path snapshotFile;
+    private final Path snapshotTmpFile;
+    private final Path journalFile;
+    private final Path rotatedJournalFile;
+    private final Object snapshotLock = new Object();
+
+    private DataOutputStream journal;
+    private long journalRecords;
+
+    public UserSnapshotStore(Path dir) {
+        this.snapshotFile = dir.resolve("users.snapshot");
+        this.snapshotTmpFile = dir.resolve("users.snapshot.tmp");
+        this.journalFile = dir.resolve("users.journal");
+        this.rotatedJournalFile = dir.resolve("users.journal.old");
+    }
+
+    public synchronized Collection<User> load() throws IOException {
+        Files.createDirectories(snapshotFile.getParent());
+        Map<String, User> users = new LinkedHashMap<>();
+        readSnapshot(users);
+        journalRecords = replayJournal(rotatedJournalFile, users) + replayJournal(journalFile, users);
+        journal = openJournal(journalFile);
+        return users.values();
+    }
+
+    public boolean isEmpty() {
+        return Files.notExists(snapshotFile) && Files.notExists(journalFile) && Files.notExists(rotatedJournalFile);
+    }
+
+    public synchronized void put(User user) throws IOException {
+        journal.writeByte(OP_PUT);
+        writeUser(journal, user);
+        journal.flush();
+        journalRecords++;
+    }
+
+    public synchronized void delete(String login) throws IOException {
+        journal.writeByte(OP_DELETE);
+        journal.writeUTF(login);
+        journal.flush();
+        journalRecords++;
+    }
+
+    public synchronized long getJournalRecords() {
+        return journalRecords;
+    }
+
+    // snapshots exclude each other (they share the tmp file and the rotated journal),
+    // while journal writes only wait for the copy and the rotation
+    public void snapshot(Supplier<Collection<User>> users) throws IOException {
+        synchronized (snapshotLock) {
+            Collection<User> copy;
+            synchronized (this) {
+                copy = users.get();
+                rotateJournal();
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(snapshotTmpFile), BUFFER_SIZE))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(copy.size());
+                for (User user : copy) {
+                    writeUser(out, user);
+                }
+            }
+            Files.move(snapshotTmpFile, snapshotFile,
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(rotatedJournalFile);
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    private void rotateJournal() throws IOException {
+        journal.close();
+        if (Files.exists(rotatedJournalFile)) {
+            try (OutputStream out = Files.newOutputStream(rotatedJournalFile, StandardOpenOption.APPEND)) {
+                Files.copy(journalFile, out);
+            }
+            Files.delete(journalFile);
+        } else {
+            Files.move(journalFile, rotatedJournalFile, StandardCopyOption.ATOMIC_MOVE);
+        }
+        journal = openJournal(journalFile);
+        journalRecords = 0;
+    }
+
+    private DataOutputStream openJournal(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(
+                file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+    }
+
+    private void readSnapshot(Map<String, User> users) throws IOException {
+        if (Files.notExists(snapshotFile)) {
+            return;
+        }
+        try (DataInputStream in = open(snapshotFile)) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported snapshot format: " + snapshotFile);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                User user = readUser(in);
+                users.put(user.getLogin(), user);
+            }
+        }
+    }
+
+    private long replayJournal(Path file, Map<String, User> users) throws IOException {
+        if (Files.notExists(file)) {
+            return 0;
+        }
+        long records = 0;
+        long goodOffset = 0;
+        CountingInputStream counter = new CountingInputStream(
+                new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+        try (DataInputStream in = new DataInputStream(counter)) {
+            for (;; records++) {
+                byte op = in.readByte();
+                if (op == OP_PUT) {
+                    User user = readUser(in);
+                    users.put(user.getLogin(), user);
+                } else if (op == OP_DELETE) {
+                    users.remove(in.readUTF());
+                } else {
+                    throw new IOException("Corrupted journal record " + op + " in " + file);
+                }
+                goodOffset = counter.getCount();
+            }
+        } catch (EOFException e) {
+            // a torn tail record from a crash is dropped
+        }
+        // later records are appended to this file, so the torn bytes must not stay in front of them
+        if (goodOffset < Files.size(file)) {
+            System.out.println("Truncating torn journal record in " + file + " at " + goodOffset);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(goodOffset);
+            }
+        }
+        return records;
+    }
+
+    private DataInputStream open(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        return new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+    }
+
+    private void writeUser(DataOutputStream out, User user) throws IOException {
+        out.writeUTF(user.getLogin());
+        out.writeUTF(user.getPassword());
+        out.writeUTF(user.getNick());
+    }
+
+    private User readUser(DataInputStream in) throws IOException {
+        return new User(in.readUTF(), in.readUTF(), in.readUTF());
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package ru.gb.may_chat.server.enums;
+
+public enum OverflowPolicy {
+    DROP_OLDEST,
+    DROP_NON_CONTROL,
+    DISCONNECT;
+
+    public static OverflowPolicy getByName(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+}
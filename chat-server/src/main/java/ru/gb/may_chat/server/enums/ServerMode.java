@@ -0,0 +1,10 @@
+package ru.gb.may_chat.server.enums;
+
+public enum ServerMode {
+    BLOCKING,
+    NIO;
+
+    public static ServerMode getByName(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,10 @@
+package ru.gb.may_chat.server.error;
+
+public class AlreadyConnectedException extends IllegalStateException {
+    public AlreadyConnectedException() {
+    }
+
+    public AlreadyConnectedException(String s) {
+        super(s);
+    }
+}
@@ -0,0 +1,10 @@
+package ru.gb.may_chat.server.error;
+
+public class LoginAlreadyIsBusyException extends IllegalArgumentException {
+    public LoginAlreadyIsBusyException() {
+    }
+
+    public LoginAlreadyIsBusyException(String s) {
+        super(s);
+    }
+}
@@ -0,0 +1,10 @@
+package ru.gb.may_chat.server.error;
+
+public class ServerBusyException extends IllegalStateException {
+    public ServerBusyException() {
+    }
+
+    public ServerBusyException(String s) {
+        super(s);
+    }
+}
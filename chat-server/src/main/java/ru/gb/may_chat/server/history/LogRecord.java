@@ -0,0 +1,55 @@
+package ru.gb.may_chat.server.history;
+
+import ru.gb.may_chat.enums.Command;
+
+import java.util.Set;
+
+public class LogRecord {
+    private final long offset;
+    private final long timestamp;
+    private final Command command;
+    private final String from;
+    private final String to;
+    private final String text;
+
+    public LogRecord(long offset, long timestamp, Command command, String from, String to, String text) {
+        this.offset = offset;
+        this.timestamp = timestamp;
+        this.command = command;
+        this.from = from;
+        this.to = to;
+        this.text = text;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public Command getCommand() {
+        return command;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public boolean isVisibleTo(String nick, Set<String> rooms) {
+        return switch (command) {
+            case ROOM_MESSAGE -> rooms.contains(to);
+            case PRIVATE_MESSAGE -> to.equals(nick) || from.equals(nick);
+            default -> true;
+        };
+    }
+}
@@ -0,0 +1,219 @@
+package ru.gb.may_chat.server.history;
+
+import ru.gb.may_chat.enums.Command;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+public class LogSegment {
+    private static final int HEADER_SIZE = Integer.BYTES;
+    private static final int INDEX_ENTRY_SIZE = Integer.BYTES * 2;
+
+    private final long baseOffset;
+    private final Path logFile;
+    private final Path indexFile;
+    private final MappedByteBuffer log;
+    private final MappedByteBuffer index;
+    private final int indexInterval;
+
+    private int[] indexOffsets;
+    private int[] indexPositions;
+    private volatile int indexSize;
+    private int lastIndexedPosition;
+
+    private volatile int committedPosition;
+    private volatile long nextOffset;
+    private volatile long lastTimestamp;
+    private int position;
+
+    private LogSegment(Path dir, long baseOffset, int capacity, int indexInterval) throws IOException {
+        this.baseOffset = baseOffset;
+        this.logFile = dir.resolve(String.format("%020d.log", baseOffset));
+        this.indexFile = dir.resolve(String.format("%020d.index", baseOffset));
+        this.indexInterval = indexInterval;
+        this.log = map(logFile, capacity);
+        this.index = map(indexFile, (capacity / indexInterval + 1) * INDEX_ENTRY_SIZE);
+        int maxEntries = index.capacity() / INDEX_ENTRY_SIZE;
+        this.indexOffsets = new int[Math.min(maxEntries, 64)];
+        this.indexPositions = new int[indexOffsets.length];
+        this.nextOffset = baseOffset;
+    }
+
+    static LogSegment create(Path dir, long baseOffset, int capacity, int indexInterval) throws IOException {
+        return new LogSegment(dir, baseOffset, capacity, indexInterval);
+    }
+
+    static LogSegment open(Path dir, long baseOffset, int capacity, int indexInterval) throws IOException {
+        LogSegment segment = new LogSegment(dir, baseOffset, capacity, indexInterval);
+        segment.recover();
+        return segment;
+    }
+
+    private static MappedByteBuffer map(Path file, int capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = Math.max(channel.size(), capacity);
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private void recover() {
+        int start = 0;
+        for (int i = 0; i < index.capacity() / INDEX_ENTRY_SIZE; i++) {
+            int relativeOffset = index.getInt(i * INDEX_ENTRY_SIZE);
+            int indexedPosition = index.getInt(i * INDEX_ENTRY_SIZE + Integer.BYTES);
+            if (indexedPosition <= 0 || indexedPosition >= log.capacity()) {
+                break;
+            }
+            addIndexEntry(relativeOffset, indexedPosition);
+            start = indexedPosition;
+        }
+        position = start;
+        long offset = indexSize > 0 ? baseOffset + indexOffsets[indexSize - 1] : baseOffset;
+        while (position + HEADER_SIZE <= log.capacity()) {
+            int size = log.getInt(position);
+            if (size <= 0 || position + HEADER_SIZE + size > log.capacity()) {
+                break;
+            }
+            offset = log.getLong(position + HEADER_SIZE) + 1;
+            lastTimestamp = log.getLong(position + HEADER_SIZE + Long.BYTES);
+            position += HEADER_SIZE + size;
+        }
+        lastIndexedPosition = indexSize > 0 ? indexPositions[indexSize - 1] : 0;
+        nextOffset = offset;
+        committedPosition = position;
+    }
+
+    int append(Command command, String from, String to, String text, long timestamp) {
+        byte[] fromBytes = from.getBytes(StandardCharsets.UTF_8);
+        byte[] toBytes = to.getBytes(StandardCharsets.UTF_8);
+        byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
+        int size = Long.BYTES * 2 + 1
+                + Integer.BYTES * 3 + fromBytes.length + toBytes.length + textBytes.length;
+        if (position + HEADER_SIZE + size > log.capacity()) {
+            return -1;
+        }
+        long offset = nextOffset;
+        if (position - lastIndexedPosition >= indexInterval) {
+            writeIndexEntry((int) (offset - baseOffset), position);
+        }
+        ByteBuffer buffer = log.duplicate();
+        buffer.position(position + HEADER_SIZE);
+        buffer.putLong(offset);
+        buffer.putLong(timestamp);
+        buffer.put((byte) command.getOpcode());
+        buffer.putInt(fromBytes.length).put(fromBytes);
+        buffer.putInt(toBytes.length).put(toBytes);
+        buffer.putInt(textBytes.length).put(textBytes);
+        log.putInt(position, size);
+        position += HEADER_SIZE + size;
+        nextOffset = offset + 1;
+        lastTimestamp = timestamp;
+        return size;
+    }
+
+    private void writeIndexEntry(int relativeOffset, int indexedPosition) {
+        int slot = indexSize * INDEX_ENTRY_SIZE;
+        if (slot + INDEX_ENTRY_SIZE > index.capacity()) {
+            return;
+        }
+        index.putInt(slot, relativeOffset);
+        index.putInt(slot + Integer.BYTES, indexedPosition);
+        addIndexEntry(relativeOffset, indexedPosition);
+        lastIndexedPosition = indexedPosition;
+    }
+
+    private void addIndexEntry(int relativeOffset, int indexedPosition) {
+        if (indexSize == indexOffsets.length) {
+            indexOffsets = Arrays.copyOf(indexOffsets, indexSize * 2);
+            indexPositions = Arrays.copyOf(indexPositions, indexSize * 2);
+        }
+        indexOffsets[indexSize] = relativeOffset;
+        indexPositions[indexSize] = indexedPosition;
+        indexSize++;
+    }
+
+    void commit() {
+        log.force();
+        index.force();
+        committedPosition = position;
+    }
+
+    void read(long fromOffset, long toOffset, List<LogRecord> target) {
+        int limit = committedPosition;
+        int entries = indexSize;
+        int[] offsets = indexOffsets;
+        int[] positions = indexPositions;
+        entries = Math.min(entries, Math.min(offsets.length, positions.length));
+        int slot = Arrays.binarySearch(offsets, 0, entries, (int) Math.max(0, fromOffset - baseOffset));
+        if (slot < 0) {
+            slot = -slot - 2;
+        }
+        ByteBuffer buffer = log.duplicate();
+        int current = slot >= 0 ? positions[slot] : 0;
+        while (current + HEADER_SIZE <= limit) {
+            int size = buffer.getInt(current);
+            if (size <= 0) {
+                break;
+            }
+            long offset = buffer.getLong(current + HEADER_SIZE);
+            if (offset >= toOffset) {
+                break;
+            }
+            if (offset >= fromOffset) {
+                buffer.position(current + HEADER_SIZE + Long.BYTES);
+                target.add(readRecord(buffer, offset));
+            }
+            current += HEADER_SIZE + size;
+        }
+    }
+
+    private LogRecord readRecord(ByteBuffer buffer, long offset) {
+        long timestamp = buffer.getLong();
+        Command command = Command.getByOpcode(buffer.get() & 0xFF);
+        String from = readString(buffer);
+        String to = readString(buffer);
+        String text = readString(buffer);
+        return new LogRecord(offset, timestamp, command, from, to, text);
+    }
+
+    private String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(logFile);
+        Files.deleteIfExists(indexFile);
+    }
+
+    long getBaseOffset() {
+        return baseOffset;
+    }
+
+    long getNextOffset() {
+        return nextOffset;
+    }
+
+    long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    int getSize() {
+        return position;
+    }
+
+    static long parseBaseOffset(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.indexOf('.')));
+    }
+}
@@ -0,0 +1,271 @@
+package ru.gb.may_chat.server.history;
+
+import ru.gb.may_chat.enums.Command;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+public class MessageLog implements Runnable {
+    private static final int MAX_BATCH = 1024;
+    private static final long RETENTION_CHECK_INTERVAL = 60000;
+
+    private final Path dir;
+    private final int segmentSize;
+    private final int indexInterval;
+    private final long retentionMs;
+    private final long retentionBytes;
+    private final int maxScan;
+    private final ConcurrentNavigableMap<Long, LogSegment> segments = new ConcurrentSkipListMap<>();
+    private final BlockingQueue<PendingRecord> pending = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean running;
+    private LogSegment active;
+    private long lastRetentionCheck;
+
+    private long appended;
+    private long commits;
+
+    public MessageLog(Path dir, int segmentSize, int indexInterval, long retentionMs, long retentionBytes,
+                      int maxScan) {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.indexInterval = indexInterval;
+        this.retentionMs = retentionMs;
+        this.retentionBytes = retentionBytes;
+        this.maxScan = maxScan;
+        this.writer = new Thread(this, "message-log-writer");
+        this.writer.setDaemon(true);
+    }
+
+    public void start() throws IOException {
+        Files.createDirectories(dir);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.log")) {
+            for (Path file : files) {
+                long baseOffset = LogSegment.parseBaseOffset(file);
+                segments.put(baseOffset, LogSegment.open(dir, baseOffset, segmentSize, indexInterval));
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.put(0L, LogSegment.create(dir, 0, segmentSize, indexInterval));
+        }
+        active = segments.lastEntry().getValue();
+        System.out.println("Message log opened, segments: " + segments.size()
+                + ", next offset: " + active.getNextOffset());
+        running = true;
+        writer.start();
+    }
+
+    public void stop() {
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void append(Command command, String from, String to, String text) {
+        if (running) {
+            pending.add(new PendingRecord(command, from, to == null ? "" : to, text, System.currentTimeMillis()));
+        }
+    }
+
+    @Override
+    public void run() {
+        List<PendingRecord> batch = new ArrayList<>(MAX_BATCH);
+        while (running || !pending.isEmpty()) {
+            try {
+                if (running) {
+                    PendingRecord record = pending.poll(RETENTION_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+                    if (record != null) {
+                        batch.add(record);
+                    }
+                }
+                pending.drainTo(batch, MAX_BATCH - batch.size());
+                write(batch);
+                checkRetention();
+            } catch (InterruptedException e) {
+                pending.drainTo(batch);
+                write(batch);
+            } catch (RuntimeException e) {
+                System.err.println("Message log write failed: " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+        System.out.println("Message log closed, records: " + appended + ", commits: " + commits);
+    }
+
+    private void write(List<PendingRecord> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (PendingRecord record : batch) {
+            if (active.append(record.command, record.from, record.to, record.text, record.timestamp) < 0) {
+                roll();
+                if (active.append(record.command, record.from, record.to, record.text, record.timestamp) < 0) {
+                    System.err.println("Message is too large for the message log, skipped");
+                    continue;
+                }
+            }
+            appended++;
+        }
+        active.commit();
+        commits++;
+    }
+
+    private void roll() {
+        active.commit();
+        long baseOffset = active.getNextOffset();
+        try {
+            LogSegment segment = LogSegment.create(dir, baseOffset, segmentSize, indexInterval);
+            segments.put(baseOffset, segment);
+            active = segment;
+            applyRetention();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to roll message log segment", e);
+        }
+    }
+
+    // retention normally runs on roll, which a quiet log may never reach
+    private void checkRetention() {
+        long now = System.currentTimeMillis();
+        if (now - lastRetentionCheck < RETENTION_CHECK_INTERVAL) {
+            return;
+        }
+        lastRetentionCheck = now;
+        if (retentionMs > 0 && active.getNextOffset() > active.getBaseOffset()
+                && now - active.getLastTimestamp() > retentionMs) {
+            roll();
+        } else {
+            applyRetention();
+        }
+    }
+
+    private void applyRetention() {
+        long now = System.currentTimeMillis();
+        long total = 0;
+        for (LogSegment segment : segments.values()) {
+            total += segment.getSize();
+        }
+        for (Map.Entry<Long, LogSegment> entry : segments.entrySet()) {
+            LogSegment segment = entry.getValue();
+            if (segment == active) {
+                break;
+            }
+            boolean expired = retentionMs > 0 && now - segment.getLastTimestamp() > retentionMs;
+            boolean oversized = retentionBytes > 0 && total > retentionBytes;
+            if (!expired && !oversized) {
+                break;
+            }
+            segments.remove(entry.getKey());
+            total -= segment.getSize();
+            try {
+                segment.delete();
+                System.out.println("Message log segment " + entry.getKey() + " removed by retention");
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public List<LogRecord> readSince(long offset, long limit, int max, Predicate<LogRecord> filter) {
+        List<LogRecord> result = new ArrayList<>();
+        if (max <= 0) {
+            return result;
+        }
+        Long start = segments.floorKey(offset);
+        for (LogSegment segment : segments.subMap(start != null ? start : offset, true, limit, false).values()) {
+            List<LogRecord> records = new ArrayList<>();
+            segment.read(offset, limit, records);
+            for (LogRecord record : records) {
+                if (filter.test(record)) {
+                    result.add(record);
+                    if (result.size() == max) {
+                        return result;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    public List<LogRecord> readLast(int count, Predicate<LogRecord> filter) {
+        List<LogRecord> result = new ArrayList<>();
+        long end = getNextOffset();
+        long floor = Math.max(getStartOffset(), end - maxScan);
+        long window = Math.max(count, 1);
+        long from = end;
+        while (result.size() < count && from > floor) {
+            long to = from;
+            from = Math.max(floor, to - window);
+            List<LogRecord> chunk = new ArrayList<>();
+            for (LogSegment segment : segments.subMap(floorKey(from), true, to, false).values()) {
+                List<LogRecord> records = new ArrayList<>();
+                segment.read(from, to, records);
+                for (LogRecord record : records) {
+                    if (filter.test(record)) {
+                        chunk.add(record);
+                    }
+                }
+            }
+            Collections.reverse(chunk);
+            for (LogRecord record : chunk) {
+                if (result.size() == count) {
+                    break;
+                }
+                result.add(record);
+            }
+            window *= 2;
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    private long floorKey(long offset) {
+        Long key = segments.floorKey(offset);
+        return key != null ? key : segments.firstKey();
+    }
+
+    // bounds a filtered read so a sparse filter cannot walk the whole log
+    public long getScanLimit(long offset) {
+        return Math.min(getNextOffset(), Math.max(offset, getStartOffset()) + maxScan);
+    }
+
+    public long getStartOffset() {
+        return segments.firstKey();
+    }
+
+    public long getNextOffset() {
+        return segments.lastEntry().getValue().getNextOffset();
+    }
+
+    private static class PendingRecord {
+        private final Command command;
+        private final String from;
+        private final String to;
+        private final String text;
+        private final long timestamp;
+
+        private PendingRecord(Command command, String from, String to, String text, long timestamp) {
+            this.command = command;
+            this.from = from;
+            this.to = to;
+            this.text = text;
+            this.timestamp = timestamp;
+        }
+    }
+}
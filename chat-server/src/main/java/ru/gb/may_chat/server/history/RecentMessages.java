@@ -0,0 +1,81 @@
+package ru.gb.may_chat.server.history;
+
+import ru.gb.may_chat.protocol.Frame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class RecentMessages {
+    private final int capacity;
+    private final Ring broadcasts;
+    private final ConcurrentMap<String, Ring> rooms = new ConcurrentHashMap<>();
+
+    public RecentMessages(int capacity) {
+        this.capacity = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.broadcasts = new Ring(this.capacity);
+    }
+
+    public void addBroadcast(Frame frame) {
+        broadcasts.add(frame);
+    }
+
+    public List<Frame> latestBroadcasts(int count) {
+        return broadcasts.latest(count);
+    }
+
+    public void add(String room, Frame frame) {
+        rooms.computeIfAbsent(room, name -> new Ring(capacity)).add(frame);
+    }
+
+    public List<Frame> latest(String room, int count) {
+        Ring ring = rooms.get(room);
+        return ring == null ? List.of() : ring.latest(count);
+    }
+
+    public void remove(String room) {
+        rooms.remove(room);
+    }
+
+    private static class Ring {
+        private final AtomicReferenceArray<Slot> slots;
+        private final int mask;
+        private final AtomicLong sequence = new AtomicLong();
+
+        private Ring(int capacity) {
+            this.slots = new AtomicReferenceArray<>(capacity);
+            this.mask = capacity - 1;
+        }
+
+        private void add(Frame frame) {
+            long seq = sequence.getAndIncrement();
+            slots.set((int) (seq & mask), new Slot(seq, frame));
+        }
+
+        private List<Frame> latest(int count) {
+            long end = sequence.get();
+            long start = Math.max(0, end - Math.min(count, slots.length()));
+            List<Frame> frames = new ArrayList<>((int) (end - start));
+            for (long seq = start; seq < end; seq++) {
+                Slot slot = slots.get((int) (seq & mask));
+                if (slot != null && slot.seq == seq) {
+                    frames.add(slot.frame);
+                }
+            }
+            return frames;
+        }
+    }
+
+    private static class Slot {
+        private final long seq;
+        private final Frame frame;
+
+        private Slot(long seq, Frame frame) {
+            this.seq = seq;
+            this.frame = frame;
+        }
+    }
+}
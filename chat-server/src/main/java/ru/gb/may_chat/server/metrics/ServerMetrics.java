@@ -0,0 +1,275 @@
+package ru.gb.may_chat.server.metrics;
+
+import ru.gb.may_chat.enums.Command;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ServerMetrics implements ServerMetricsMXBean {
+    private static final String DOMAIN = "ru.gb.may_chat";
+    private static final ServerMetrics INSTANCE = new ServerMetrics();
+
+    private final long startedAt = System.currentTimeMillis();
+    private final LongAdder connectionsOpened = new LongAdder();
+    private final LongAdder connectionsClosed = new LongAdder();
+    private final LongAdder outboundBytes = new LongAdder();
+    private final LongAdder outboundFramesQueued = new LongAdder();
+    private final LongAdder outboundFramesDropped = new LongAdder();
+    private final LongAccumulator outboundMaxDepth = new LongAccumulator(Math::max, 0);
+    private final LongAdder slowClientDisconnects = new LongAdder();
+    private final LongAdder presenceEventsReceived = new LongAdder();
+    private final LongAdder presenceEventsPublished = new LongAdder();
+    private final LongAdder presenceBatches = new LongAdder();
+    private final LongAdder userCacheHits = new LongAdder();
+    private final LongAdder userCacheMisses = new LongAdder();
+    private final LongAdder userCacheEvictions = new LongAdder();
+    private final LongAdder[] messagesByOpcode = new LongAdder[256];
+
+    private final LatencyHistogram broadcastFanOut = new LatencyHistogram("broadcastFanOut");
+    private final LatencyHistogram authLatency = new LatencyHistogram("authLatency");
+    private final LatencyHistogram dbQueryLatency = new LatencyHistogram("dbQueryLatency");
+
+    private ServerMetrics() {
+        for (Command command : Command.values()) {
+            messagesByOpcode[command.getOpcode()] = new LongAdder();
+        }
+    }
+
+    public static ServerMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    public void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(this, new ObjectName(DOMAIN + ":type=Server"));
+            for (LatencyHistogram histogram : histograms()) {
+                server.registerMBean(histogram,
+                        new ObjectName(DOMAIN + ":type=Histogram,name=" + histogram.getName()));
+            }
+        } catch (JMException e) {
+            System.err.println("Failed to register metrics MBeans: " + e.getMessage());
+        }
+    }
+
+    public void connectionOpened() {
+        connectionsOpened.increment();
+    }
+
+    public void connectionClosed() {
+        connectionsClosed.increment();
+    }
+
+    public void messageReceived(Command command) {
+        messagesByOpcode[command.getOpcode()].increment();
+    }
+
+    public void bytesSent(long bytes) {
+        outboundBytes.add(bytes);
+    }
+
+    public void outboundFrameQueued(int depth) {
+        outboundFramesQueued.increment();
+        outboundMaxDepth.accumulate(depth);
+    }
+
+    public void outboundFrameDropped() {
+        outboundFramesDropped.increment();
+    }
+
+    public void slowClientDisconnected() {
+        slowClientDisconnects.increment();
+    }
+
+    public void presenceEventReceived() {
+        presenceEventsReceived.increment();
+    }
+
+    public void presenceBatchPublished(int events) {
+        presenceEventsPublished.add(events);
+        presenceBatches.increment();
+    }
+
+    public void userCacheHit() {
+        userCacheHits.increment();
+    }
+
+    public void userCacheMiss() {
+        userCacheMisses.increment();
+    }
+
+    public void userCacheEviction() {
+        userCacheEvictions.increment();
+    }
+
+    public LatencyHistogram getBroadcastFanOut() {
+        return broadcastFanOut;
+    }
+
+    public LatencyHistogram getAuthLatency() {
+        return authLatency;
+    }
+
+    public LatencyHistogram getDbQueryLatency() {
+        return dbQueryLatency;
+    }
+
+    public List<LatencyHistogram> histograms() {
+        return List.of(broadcastFanOut, authLatency, dbQueryLatency);
+    }
+
+    // flat name/value pairs for the STATS reply
+    public List<String> snapshot() {
+        List<String> fields = new ArrayList<>();
+        add(fields, "uptime.ms", getUptimeMillis());
+        add(fields, "connections", getConnections());
+        add(fields, "connections.opened", getConnectionsOpened());
+        add(fields, "outbound.bytes", getOutboundBytes());
+        add(fields, "outbound.frames.queued", getOutboundFramesQueued());
+        add(fields, "outbound.frames.dropped", getOutboundFramesDropped());
+        add(fields, "outbound.queue.max.depth", getOutboundQueueMaxDepth());
+        add(fields, "outbound.slow.disconnects", getSlowClientDisconnects());
+        add(fields, "presence.events.received", getPresenceEventsReceived());
+        add(fields, "presence.events.merged", getPresenceEventsMerged());
+        add(fields, "presence.batches", getPresenceBatches());
+        add(fields, "user.cache.hits", getUserCacheHits());
+        add(fields, "user.cache.misses", getUserCacheMisses());
+        add(fields, "user.cache.evictions", getUserCacheEvictions());
+        fields.add("user.cache.hit.rate");
+        fields.add(String.format("%.2f", getUserCacheHitRate()));
+        double uptimeSeconds = Math.max(1, getUptimeMillis()) / 1000.0;
+        for (Map.Entry<String, Long> entry : getMessagesByCommand().entrySet()) {
+            add(fields, "messages." + entry.getKey(), entry.getValue());
+            fields.add("messages." + entry.getKey() + ".rate");
+            fields.add(String.format("%.2f/s", entry.getValue() / uptimeSeconds));
+        }
+        for (LatencyHistogram histogram : histograms()) {
+            String name = histogram.getName();
+            add(fields, name + ".count", histogram.getCount());
+            add(fields, name + ".p50.us", histogram.getP50Micros());
+            add(fields, name + ".p99.us", histogram.getP99Micros());
+            add(fields, name + ".p999.us", histogram.getP999Micros());
+            add(fields, name + ".max.us", histogram.getMaxMicros());
+        }
+        return fields;
+    }
+
+    private static void add(List<String> fields, String name, long value) {
+        fields.add(name);
+        fields.add(String.valueOf(value));
+    }
+
+    @Override
+    public long getUptimeMillis() {
+        return System.currentTimeMillis() - startedAt;
+    }
+
+    @Override
+    public long getConnections() {
+        return connectionsOpened.sum() - connectionsClosed.sum();
+    }
+
+    @Override
+    public long getConnectionsOpened() {
+        return connectionsOpened.sum();
+    }
+
+    @Override
+    public long getConnectionsClosed() {
+        return connectionsClosed.sum();
+    }
+
+    @Override
+    public long getOutboundBytes() {
+        return outboundBytes.sum();
+    }
+
+    @Override
+    public long getOutboundFramesQueued() {
+        return outboundFramesQueued.sum();
+    }
+
+    @Override
+    public long getOutboundFramesDropped() {
+        return outboundFramesDropped.sum();
+    }
+
+    @Override
+    public long getOutboundQueueMaxDepth() {
+        return outboundMaxDepth.get();
+    }
+
+    @Override
+    public long getSlowClientDisconnects() {
+        return slowClientDisconnects.sum();
+    }
+
+    @Override
+    public long getPresenceEventsReceived() {
+        return presenceEventsReceived.sum();
+    }
+
+    // events that cancelled out or were folded into another change within a window
+    @Override
+    public long getPresenceEventsMerged() {
+        return Math.max(0, presenceEventsReceived.sum() - presenceEventsPublished.sum());
+    }
+
+    @Override
+    public long getPresenceBatches() {
+        return presenceBatches.sum();
+    }
+
+    @Override
+    public long getUserCacheHits() {
+        return userCacheHits.sum();
+    }
+
+    @Override
+    public long getUserCacheMisses() {
+        return userCacheMisses.sum();
+    }
+
+    @Override
+    public long getUserCacheEvictions() {
+        return userCacheEvictions.sum();
+    }
+
+    @Override
+    public double getUserCacheHitRate() {
+        long hits = userCacheHits.sum();
+        long total = hits + userCacheMisses.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public long getMessagesReceived() {
+        long total = 0;
+        for (LongAdder counter : messagesByOpcode) {
+            if (counter != null) {
+                total += counter.sum();
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public Map<String, Long> getMessagesByCommand() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Command command : Command.values()) {
+            long count = messagesByOpcode[command.getOpcode()].sum();
+            if (count > 0) {
+                counts.put(command.name().toLowerCase(), count);
+            }
+        }
+        return counts;
+    }
+}
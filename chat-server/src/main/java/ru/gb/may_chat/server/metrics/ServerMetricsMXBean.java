@@ -0,0 +1,41 @@
+package ru.gb.may_chat.server.metrics;
+
+import java.util.Map;
+
+public interface ServerMetricsMXBean {
+    long getUptimeMillis();
+
+    long getConnections();
+
+    long getConnectionsOpened();
+
+    long getConnectionsClosed();
+
+    long getOutboundBytes();
+
+    long getOutboundFramesQueued();
+
+    long getOutboundFramesDropped();
+
+    long getOutboundQueueMaxDepth();
+
+    long getSlowClientDisconnects();
+
+    long getPresenceEventsReceived();
+
+    long getPresenceEventsMerged();
+
+    long getPresenceBatches();
+
+    long getUserCacheHits();
+
+    long getUserCacheMisses();
+
+    long getUserCacheEvictions();
+
+    double getUserCacheHitRate();
+
+    long getMessagesReceived();
+
+    Map<String, Long> getMessagesByCommand();
+}
@@ -0,0 +1,37 @@
+package ru.gb.may_chat.server.model;
+
+public class OfflineMessage {
+    private final long id;
+    private final String sender;
+    private final String recipient;
+    private final String text;
+    private final long createdAt;
+
+    public OfflineMessage(long id, String sender, String recipient, String text, long createdAt) {
+        this.id = id;
+        this.sender = sender;
+        this.recipient = recipient;
+        this.text = text;
+        this.createdAt = createdAt;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getSender() {
+        return sender;
+    }
+
+    public String getRecipient() {
+        return recipient;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+}
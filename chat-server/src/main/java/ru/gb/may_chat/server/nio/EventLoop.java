@@ -0,0 +1,113 @@
+package ru.gb.may_chat.server.nio;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class EventLoop implements Runnable {
+    private final Selector selector;
+    private final Queue<NioHandler> pendingRegistrations = new ConcurrentLinkedQueue<>();
+    private final Queue<NioHandler> pendingWrites = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+
+    public EventLoop() throws IOException {
+        this.selector = Selector.open();
+    }
+
+    void register(NioHandler handler) {
+        pendingRegistrations.add(handler);
+        selector.wakeup();
+    }
+
+    void requestWrite(NioHandler handler) {
+        pendingWrites.add(handler);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select();
+                processRegistrations();
+                processWrites();
+                processSelectedKeys();
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        closeAll();
+    }
+
+    private void processRegistrations() {
+        NioHandler handler;
+        while ((handler = pendingRegistrations.poll()) != null) {
+            try {
+                handler.getChannel().configureBlocking(false);
+                SelectionKey key = handler.getChannel().register(selector, SelectionKey.OP_READ, handler);
+                handler.register(key);
+                handler.onWritable();
+            } catch (IOException | RuntimeException e) {
+                handler.close();
+            }
+        }
+    }
+
+    private void processWrites() {
+        NioHandler handler;
+        while ((handler = pendingWrites.poll()) != null) {
+            if (handler.isClosed()) {
+                continue;
+            }
+            try {
+                handler.onWriteRequested();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                handler.close();
+            }
+        }
+    }
+
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            SelectionKey key = iterator.next();
+            iterator.remove();
+            NioHandler handler = (NioHandler) key.attachment();
+            try {
+                if (key.isValid() && key.isReadable()) {
+                    handler.onReadable();
+                }
+                if (key.isValid() && key.isWritable()) {
+                    handler.onWritable();
+                }
+            } catch (CancelledKeyException e) {
+                handler.close();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                handler.close();
+            }
+        }
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : new ArrayList<>(selector.keys())) {
+            ((NioHandler) key.attachment()).close();
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+}
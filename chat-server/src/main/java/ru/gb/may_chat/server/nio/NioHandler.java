@@ -0,0 +1,154 @@
+package ru.gb.may_chat.server.nio;
+
+import ru.gb.may_chat.protocol.Codec;
+import ru.gb.may_chat.server.Handler;
+import ru.gb.may_chat.server.Server;
+import ru.gb.may_chat.server.metrics.ServerMetrics;
+import ru.gb.may_chat.server.outbound.QueuedFrame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class NioHandler extends Handler {
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    private static final int MAX_GATHERED_FRAMES = 64;
+
+    private final SocketChannel channel;
+    private final EventLoop eventLoop;
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private final ByteBuffer[] gathered = new ByteBuffer[MAX_GATHERED_FRAMES];
+    private final QueuedFrame[] gatheredFrames = new QueuedFrame[MAX_GATHERED_FRAMES];
+    private int gatheredOffset;
+    private int gatheredCount;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final AtomicBoolean writeRequested = new AtomicBoolean();
+    private volatile SelectionKey key;
+
+    public NioHandler(SocketChannel channel, EventLoop eventLoop, Server server) {
+        super(server);
+        this.channel = channel;
+        this.eventLoop = eventLoop;
+    }
+
+    @Override
+    protected void start() {
+        eventLoop.register(this);
+    }
+
+    void register(SelectionKey key) {
+        this.key = key;
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    void onReadable() {
+        try {
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                close();
+                return;
+            }
+            readBuffer.flip();
+            int required = 0;
+            while (!isClosed()) {
+                Codec codec = protocol.getCodec();
+                int length = codec.frameLength(readBuffer);
+                if (length < 0) {
+                    break;
+                }
+                if (readBuffer.remaining() < length) {
+                    required = length;
+                    break;
+                }
+                onMessage(codec.decode(readBuffer));
+            }
+            readBuffer.compact();
+            if (required > readBuffer.capacity()) {
+                readBuffer = ByteBuffer.allocate(required).put(readBuffer.flip());
+            }
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    void onWritable() {
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        try {
+            while (true) {
+                if (gatheredOffset == gatheredCount && !gatherFrames()) {
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                    return;
+                }
+                long written = channel.write(gathered, gatheredOffset, gatheredCount - gatheredOffset);
+                ServerMetrics.getInstance().bytesSent(written);
+                while (gatheredOffset < gatheredCount && !gathered[gatheredOffset].hasRemaining()) {
+                    gatheredFrames[gatheredOffset].written();
+                    gatheredFrames[gatheredOffset] = null;
+                    gathered[gatheredOffset++] = null;
+                }
+                if (gatheredOffset < gatheredCount) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    private boolean gatherFrames() {
+        gatheredOffset = 0;
+        gatheredCount = 0;
+        QueuedFrame frame;
+        while (gatheredCount < MAX_GATHERED_FRAMES && (frame = outbound.poll()) != null) {
+            try {
+                gathered[gatheredCount] = frame.asByteBuffer();
+                gatheredFrames[gatheredCount++] = frame;
+            } catch (IllegalArgumentException e) {
+                dropUnencodable(e);
+            }
+        }
+        return gatheredCount > 0;
+    }
+
+    @Override
+    protected void flush() {
+        if (writeRequested.compareAndSet(false, true)) {
+            eventLoop.requestWrite(this);
+        }
+    }
+
+    void onWriteRequested() {
+        writeRequested.set(false);
+        onWritable();
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (key != null) {
+            key.cancel();
+        }
+        outbound.clear();
+        onDisconnect();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed.get();
+    }
+}
@@ -0,0 +1,54 @@
+package ru.gb.may_chat.server.nio;
+
+import ru.gb.may_chat.server.Server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+public class NioServer {
+    private final Server server;
+    private final int port;
+    private final EventLoop[] eventLoops;
+    private int nextLoop;
+
+    public NioServer(Server server, int port, int eventLoopCount) throws IOException {
+        this.server = server;
+        this.port = port;
+        this.eventLoops = new EventLoop[eventLoopCount];
+        for (int i = 0; i < eventLoopCount; i++) {
+            eventLoops[i] = new EventLoop();
+        }
+    }
+
+    public void start() throws IOException {
+        for (int i = 0; i < eventLoops.length; i++) {
+            new Thread(eventLoops[i], "nio-event-loop-" + i).start();
+        }
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress(port));
+            System.out.println("NIO server start! Event loops: " + eventLoops.length);
+            while (true) {
+                SocketChannel channel = serverChannel.accept();
+                System.out.println("Client connected");
+                NioHandler handler = new NioHandler(channel, nextEventLoop(), server);
+                handler.handle();
+            }
+        } finally {
+            shutdown();
+        }
+    }
+
+    private EventLoop nextEventLoop() {
+        EventLoop eventLoop = eventLoops[nextLoop];
+        nextLoop = (nextLoop + 1) % eventLoops.length;
+        return eventLoop;
+    }
+
+    private void shutdown() {
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.shutdown();
+        }
+    }
+}
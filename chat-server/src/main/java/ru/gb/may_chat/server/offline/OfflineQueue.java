@@ -0,0 +1,257 @@
+package ru.gb.may_chat.server.offline;
+
+import ru.gb.may_chat.server.dao.OfflineMessageDao;
+import ru.gb.may_chat.server.model.OfflineMessage;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+public class OfflineQueue implements Runnable {
+    private static final int MAX_WRITE_BATCH = 256;
+
+    public enum StoreResult {
+        STORED, UNKNOWN_RECIPIENT, FAILED
+    }
+
+    private final OfflineMessageDao dao;
+    private final Predicate<String> recipientExists;
+    private final int maxPerRecipient;
+    private final long ttl;
+    private final int drainBatchSize;
+    private final int capacity;
+    private final long purgeInterval;
+    private final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+    private final AtomicInteger pendingStores = new AtomicInteger();
+    private final Map<String, InFlight> inFlight = new HashMap<>();
+    private final Thread worker;
+    private volatile boolean running;
+    private long lastPurge;
+
+    private long stored;
+    private long delivered;
+
+    public OfflineQueue(OfflineMessageDao dao, Predicate<String> recipientExists, int maxPerRecipient, long ttl,
+                        int drainBatchSize, int capacity, long purgeInterval) {
+        this.dao = dao;
+        this.recipientExists = recipientExists;
+        this.maxPerRecipient = maxPerRecipient;
+        this.ttl = ttl;
+        this.drainBatchSize = drainBatchSize;
+        this.capacity = capacity;
+        this.purgeInterval = purgeInterval;
+        this.worker = new Thread(this, "offline-queue");
+        this.worker.setDaemon(true);
+    }
+
+    public void start() {
+        try {
+            dao.connect();
+        } catch (ClassNotFoundException | SQLException e) {
+            throw new IllegalStateException("Failed to open offline message store", e);
+        }
+        running = true;
+        worker.start();
+    }
+
+    public void stop() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(1000);
+            dao.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // the recipient is checked and the message written on the queue thread, which then reports to onStored
+    public boolean offer(String sender, String recipient, String text, Consumer<StoreResult> onStored) {
+        if (!running || pendingStores.incrementAndGet() > capacity) {
+            pendingStores.decrementAndGet();
+            return false;
+        }
+        tasks.add(new Store(new OfflineMessage(0, sender, recipient, text, System.currentTimeMillis()), onStored));
+        return true;
+    }
+
+    public interface Sink {
+        // returns false once the recipient is gone; onWritten runs after the whole page reached the socket
+        boolean deliver(List<OfflineMessage> page, Runnable onWritten);
+    }
+
+    // a page is deleted only after the connection has written it, and the next page is read only then,
+    // so a page lost with a dropped connection is delivered again on the next login; session tells a
+    // new login apart from a repeated drain for the connection that already has a page in flight
+    public void drain(String recipient, Object session, Sink sink) {
+        tasks.add(() -> {
+            InFlight pages = inFlight.get(recipient);
+            if (pages != null && pages.session == session) {
+                pages.rerun = true;
+                return;
+            }
+            drainNow(recipient, session, sink, 0);
+        });
+    }
+
+    public void rename(String oldNick, String newNick) {
+        tasks.add(() -> {
+            inFlight.remove(oldNick);
+            try {
+                dao.updateRecipient(oldNick, newNick);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    @Override
+    public void run() {
+        List<Store> batch = new ArrayList<>(MAX_WRITE_BATCH);
+        while (running || !tasks.isEmpty()) {
+            try {
+                Runnable task = running ? tasks.poll(purgeInterval, TimeUnit.MILLISECONDS) : tasks.poll();
+                if (task instanceof Store store) {
+                    batch.add(store);
+                    while (batch.size() < MAX_WRITE_BATCH && tasks.peek() instanceof Store next) {
+                        tasks.remove();
+                        batch.add(next);
+                    }
+                    write(batch);
+                } else if (task != null) {
+                    task.run();
+                }
+                purgeExpired();
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (RuntimeException e) {
+                System.err.println("Offline queue task failed: " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+        System.out.println("Offline queue closed, stored: " + stored + ", delivered: " + delivered);
+    }
+
+    private void write(List<Store> batch) {
+        List<Store> known = new ArrayList<>(batch.size());
+        List<OfflineMessage> messages = new ArrayList<>(batch.size());
+        Set<String> recipients = new LinkedHashSet<>();
+        Set<String> unknown = new HashSet<>();
+        StoreResult result = StoreResult.FAILED;
+        try {
+            for (Store store : batch) {
+                String recipient = store.message.getRecipient();
+                if (unknown.contains(recipient) || (!recipients.contains(recipient) && !recipientExists.test(recipient))) {
+                    unknown.add(recipient);
+                    store.onStored.accept(StoreResult.UNKNOWN_RECIPIENT);
+                    continue;
+                }
+                known.add(store);
+                messages.add(store.message);
+                recipients.add(recipient);
+            }
+            if (!messages.isEmpty()) {
+                dao.insertAll(messages, recipients, maxPerRecipient);
+                stored += messages.size();
+            }
+            result = StoreResult.STORED;
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Failed to store " + batch.size() + " offline messages: " + e.getMessage());
+        } finally {
+            pendingStores.addAndGet(-batch.size());
+        }
+        for (Store store : known) {
+            store.onStored.accept(result);
+        }
+    }
+
+    private void drainNow(String recipient, Object session, Sink sink, long afterId) {
+        long notBefore = ttl > 0 ? System.currentTimeMillis() - ttl : 0;
+        List<OfflineMessage> page;
+        try {
+            page = dao.findBatch(recipient, afterId, notBefore, drainBatchSize);
+        } catch (SQLException e) {
+            System.err.println("Failed to drain offline messages for " + recipient + ": " + e.getMessage());
+            inFlight.remove(recipient);
+            return;
+        }
+        Runnable onWritten = () -> tasks.add(() -> onPageWritten(recipient, session, sink, page));
+        if (page.isEmpty() || !sink.deliver(page, onWritten)) {
+            inFlight.remove(recipient);
+            return;
+        }
+        inFlight.put(recipient, new InFlight(session));
+    }
+
+    private void onPageWritten(String recipient, Object session, Sink sink, List<OfflineMessage> page) {
+        try {
+            dao.deleteAll(page);
+            delivered += page.size();
+        } catch (SQLException e) {
+            System.err.println("Failed to delete " + page.size() + " delivered offline messages: " + e.getMessage());
+        }
+        InFlight pages = inFlight.get(recipient);
+        if (pages == null || pages.session != session) {
+            return;
+        }
+        if (page.size() < drainBatchSize && !pages.rerun) {
+            inFlight.remove(recipient);
+            return;
+        }
+        drainNow(recipient, session, sink, page.get(page.size() - 1).getId());
+    }
+
+    private void purgeExpired() {
+        long now = System.currentTimeMillis();
+        if (ttl <= 0 || now - lastPurge < purgeInterval) {
+            return;
+        }
+        lastPurge = now;
+        try {
+            int removed = dao.deleteExpired(now - ttl);
+            if (removed > 0) {
+                System.out.println("Offline messages expired: " + removed);
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to purge offline messages: " + e.getMessage());
+        }
+    }
+
+    private static class InFlight {
+        private final Object session;
+        private boolean rerun;
+
+        private InFlight(Object session) {
+            this.session = session;
+        }
+    }
+
+    private class Store implements Runnable {
+        private final OfflineMessage message;
+        private final Consumer<StoreResult> onStored;
+
+        private Store(OfflineMessage message, Consumer<StoreResult> onStored) {
+            this.message = message;
+            this.onStored = onStored;
+        }
+
+        @Override
+        public void run() {
+            write(List.of(this));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package ru.gb.may_chat.server.outbound;
+
+import ru.gb.may_chat.server.enums.OverflowPolicy;
+import ru.gb.may_chat.server.metrics.ServerMetrics;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+public class OutboundQueue {
+    private final ArrayDeque<QueuedFrame> frames = new ArrayDeque<>();
+    private final int capacity;
+    private final OverflowPolicy policy;
+
+    public OutboundQueue(int capacity, OverflowPolicy policy) {
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    // control frames (replay headers, presence deltas, auth replies) and stored offline messages are never
+    // dropped: losing one desynchronizes the client or loses data, so when only those are left the caller
+    // disconnects instead
+    public synchronized boolean offer(QueuedFrame frame) {
+        if (frames.size() >= capacity) {
+            switch (policy) {
+                case DROP_OLDEST -> {
+                    if (!dropOldestDroppable()) {
+                        return false;
+                    }
+                }
+                case DROP_NON_CONTROL -> {
+                    if (frame.isDroppable()) {
+                        ServerMetrics.getInstance().outboundFrameDropped();
+                        return true;
+                    }
+                    if (!dropOldestDroppable()) {
+                        return false;
+                    }
+                }
+                case DISCONNECT -> {
+                    return false;
+                }
+            }
+        }
+        frames.addLast(frame);
+        ServerMetrics.getInstance().outboundFrameQueued(frames.size());
+        return true;
+    }
+
+    private boolean dropOldestDroppable() {
+        Iterator<QueuedFrame> iterator = frames.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isDroppable()) {
+                iterator.remove();
+                ServerMetrics.getInstance().outboundFrameDropped();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized QueuedFrame poll() {
+        return frames.pollFirst();
+    }
+
+    public synchronized boolean isEmpty() {
+        return frames.isEmpty();
+    }
+
+    public synchronized void clear() {
+        frames.clear();
+    }
+}
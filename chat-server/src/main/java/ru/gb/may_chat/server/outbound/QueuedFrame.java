@@ -0,0 +1,52 @@
+package ru.gb.may_chat.server.outbound;
+
+import ru.gb.may_chat.protocol.Frame;
+import ru.gb.may_chat.protocol.ProtocolVersion;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+public class QueuedFrame {
+    private final Frame frame;
+    private final ProtocolVersion version;
+    private final boolean droppable;
+    private final Runnable onWritten;
+
+    public QueuedFrame(Frame frame, ProtocolVersion version) {
+        this(frame, version, !frame.isControl(), null);
+    }
+
+    public QueuedFrame(Frame frame, ProtocolVersion version, boolean droppable, Runnable onWritten) {
+        this.frame = frame;
+        this.version = version;
+        this.droppable = droppable;
+        this.onWritten = onWritten;
+    }
+
+    public boolean isDroppable() {
+        return droppable;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        frame.writeTo(out, version);
+    }
+
+    public ByteBuffer asByteBuffer() {
+        return frame.asByteBuffer(version);
+    }
+
+    public int size() {
+        return frame.size(version);
+    }
+
+    public boolean awaitsWrite() {
+        return onWritten != null;
+    }
+
+    public void written() {
+        if (onWritten != null) {
+            onWritten.run();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package ru.gb.may_chat.server.presence;
+
+import ru.gb.may_chat.server.metrics.ServerMetrics;
+import ru.gb.may_chat.server.timer.HashedWheelTimer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+public class PresenceAggregator {
+    private final PresenceTracker tracker;
+    private final HashedWheelTimer timer;
+    private final Executor executor;
+    private final long window;
+
+    private final Set<String> online = new HashSet<>();
+    private final Set<String> touched = new LinkedHashSet<>();
+    private final Map<String, String> renamedFrom = new HashMap<>();
+    private final Object publishLock = new Object();
+    private boolean flushScheduled;
+
+    public PresenceAggregator(PresenceTracker tracker, HashedWheelTimer timer, Executor executor, long window) {
+        this.tracker = tracker;
+        this.timer = timer;
+        this.executor = executor;
+        this.window = window;
+    }
+
+    public void joined(String nick) {
+        synchronized (this) {
+            online.add(nick);
+            touched.add(nick);
+        }
+        afterEvent();
+    }
+
+    public void left(String nick) {
+        synchronized (this) {
+            online.remove(nick);
+            touched.add(nick);
+        }
+        afterEvent();
+    }
+
+    public void renamed(String oldNick, String newNick) {
+        synchronized (this) {
+            online.remove(oldNick);
+            online.add(newNick);
+            touched.add(oldNick);
+            touched.add(newNick);
+            String origin = renamedFrom.remove(oldNick);
+            renamedFrom.put(newNick, origin != null ? origin : oldNick);
+        }
+        afterEvent();
+    }
+
+    // callers may hold the server monitor, so publishing (and the sends it triggers) never happens
+    // while this aggregator is locked
+    private void afterEvent() {
+        ServerMetrics.getInstance().presenceEventReceived();
+        if (window <= 0) {
+            flush();
+        } else if (scheduleFlush()) {
+            timer.schedule(() -> executor.execute(this::flush), window, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized boolean scheduleFlush() {
+        if (flushScheduled) {
+            return false;
+        }
+        flushScheduled = true;
+        return true;
+    }
+
+    public void flush() {
+        synchronized (publishLock) {
+            List<PresenceChange> changes = drainChanges();
+            if (!changes.isEmpty()) {
+                ServerMetrics.getInstance().presenceBatchPublished(changes.size());
+                tracker.publish(changes);
+            }
+        }
+    }
+
+    private synchronized List<PresenceChange> drainChanges() {
+        flushScheduled = false;
+        List<PresenceChange> changes = new ArrayList<>();
+        Set<String> renamed = new HashSet<>();
+        for (Map.Entry<String, String> entry : renamedFrom.entrySet()) {
+            String nick = entry.getKey();
+            String origin = entry.getValue();
+            if (!nick.equals(origin) && online.contains(nick) && !online.contains(origin)
+                    && tracker.isPublished(origin) && !tracker.isPublished(nick)) {
+                changes.add(PresenceChange.renamed(origin, nick));
+                renamed.add(origin);
+                renamed.add(nick);
+            }
+        }
+        for (String nick : touched) {
+            if (renamed.contains(nick)) {
+                continue;
+            }
+            boolean wasOnline = tracker.isPublished(nick);
+            boolean isOnline = online.contains(nick);
+            if (isOnline && !wasOnline) {
+                changes.add(PresenceChange.joined(nick));
+            } else if (!isOnline && wasOnline) {
+                changes.add(PresenceChange.left(nick));
+            }
+        }
+        touched.clear();
+        renamedFrom.clear();
+        return changes;
+    }
+}
@@ -0,0 +1,39 @@
+package ru.gb.may_chat.server.presence;
+
+import ru.gb.may_chat.enums.PresenceEvent;
+
+public class PresenceChange {
+    private final PresenceEvent event;
+    private final String nick;
+    private final String newNick;
+
+    private PresenceChange(PresenceEvent event, String nick, String newNick) {
+        this.event = event;
+        this.nick = nick;
+        this.newNick = newNick;
+    }
+
+    public static PresenceChange joined(String nick) {
+        return new PresenceChange(PresenceEvent.JOINED, nick, null);
+    }
+
+    public static PresenceChange left(String nick) {
+        return new PresenceChange(PresenceEvent.LEFT, nick, null);
+    }
+
+    public static PresenceChange renamed(String oldNick, String newNick) {
+        return new PresenceChange(PresenceEvent.RENAMED, oldNick, newNick);
+    }
+
+    public PresenceEvent getEvent() {
+        return event;
+    }
+
+    public String getNick() {
+        return nick;
+    }
+
+    public String getNewNick() {
+        return newNick;
+    }
+}
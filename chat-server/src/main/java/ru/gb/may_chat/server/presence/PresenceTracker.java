@@ -0,0 +1,77 @@
+package ru.gb.may_chat.server.presence;
+
+import ru.gb.may_chat.protocol.Frame;
+import ru.gb.may_chat.server.Handler;
+import ru.gb.may_chat.server.session.SessionRegistry;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static ru.gb.may_chat.enums.Command.LIST_USERS;
+import static ru.gb.may_chat.enums.Command.PRESENCE;
+import static ru.gb.may_chat.enums.Command.PRESENCE_SNAPSHOT;
+
+public class PresenceTracker {
+    private final SessionRegistry sessions;
+    private final Set<String> published = new LinkedHashSet<>();
+    private long version;
+
+    public PresenceTracker(SessionRegistry sessions) {
+        this.sessions = sessions;
+    }
+
+    public synchronized void publish(List<PresenceChange> changes) {
+        version++;
+        List<String> fields = new ArrayList<>(changes.size() * 2 + 1);
+        fields.add(String.valueOf(version));
+        for (PresenceChange change : changes) {
+            fields.add(change.getEvent().getEvent());
+            fields.add(change.getNick());
+            switch (change.getEvent()) {
+                case JOINED -> published.add(change.getNick());
+                case LEFT -> published.remove(change.getNick());
+                case RENAMED -> {
+                    fields.add(change.getNewNick());
+                    published.remove(change.getNick());
+                    published.add(change.getNewNick());
+                }
+            }
+        }
+        Frame delta = Frame.of(PRESENCE, fields.toArray(String[]::new));
+        Frame legacyList = null;
+        for (Handler handler : sessions.handlers()) {
+            if (handler.isBinaryProtocol()) {
+                handler.send(delta);
+            } else {
+                if (legacyList == null) {
+                    legacyList = Frame.of(LIST_USERS, published.toArray(String[]::new));
+                }
+                handler.send(legacyList);
+            }
+        }
+    }
+
+    public synchronized void sendSnapshot(Handler handler) {
+        if (handler.isBinaryProtocol()) {
+            String[] fields = new String[published.size() + 1];
+            fields[0] = String.valueOf(version);
+            int i = 1;
+            for (String nick : published) {
+                fields[i++] = nick;
+            }
+            handler.send(PRESENCE_SNAPSHOT, fields);
+        } else {
+            handler.send(LIST_USERS, published.toArray(String[]::new));
+        }
+    }
+
+    public synchronized boolean isPublished(String nick) {
+        return published.contains(nick);
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+}
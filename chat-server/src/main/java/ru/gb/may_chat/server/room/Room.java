@@ -0,0 +1,59 @@
+package ru.gb.may_chat.server.room;
+
+import ru.gb.may_chat.protocol.Frame;
+import ru.gb.may_chat.server.Handler;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+public class Room {
+    private static final Handler[] EMPTY = new Handler[0];
+
+    private final String name;
+    private final Set<Handler> members = new LinkedHashSet<>();
+    private volatile Handler[] fanOut = EMPTY;
+    private boolean closed;
+
+    Room(String name) {
+        this.name = name;
+    }
+
+    synchronized boolean join(Handler handler) {
+        if (closed) {
+            return false;
+        }
+        if (members.add(handler)) {
+            fanOut = members.toArray(EMPTY);
+        }
+        return true;
+    }
+
+    synchronized boolean leave(Handler handler) {
+        if (!members.remove(handler)) {
+            return false;
+        }
+        fanOut = members.toArray(EMPTY);
+        if (members.isEmpty()) {
+            closed = true;
+        }
+        return true;
+    }
+
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    public void send(Frame frame) {
+        for (Handler handler : fanOut) {
+            handler.send(frame);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        return fanOut.length;
+    }
+}
@@ -0,0 +1,53 @@
+package ru.gb.may_chat.server.room;
+
+import ru.gb.may_chat.server.Handler;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+public class RoomRegistry {
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]{1,32}");
+
+    private final ConcurrentMap<String, Room> rooms = new ConcurrentHashMap<>();
+    private final Consumer<String> onRoomClosed;
+
+    public RoomRegistry(Consumer<String> onRoomClosed) {
+        this.onRoomClosed = onRoomClosed;
+    }
+
+    public static boolean isValidName(String name) {
+        return name != null && NAME.matcher(name).matches();
+    }
+
+    public void join(String name, Handler handler) {
+        while (true) {
+            Room room = rooms.computeIfAbsent(name, Room::new);
+            if (room.join(handler)) {
+                return;
+            }
+            rooms.remove(name, room);
+        }
+    }
+
+    public boolean leave(String name, Handler handler) {
+        Room room = rooms.get(name);
+        if (room == null || !room.leave(handler)) {
+            return false;
+        }
+        if (room.isClosed() && rooms.remove(name, room)) {
+            onRoomClosed.accept(name);
+        }
+        return true;
+    }
+
+    public Optional<Room> find(String name) {
+        return Optional.ofNullable(rooms.get(name));
+    }
+
+    public int size() {
+        return rooms.size();
+    }
+}
@@ -0,0 +1,14 @@
+package ru.gb.may_chat.server.service;
+
+import ru.gb.may_chat.server.model.User;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+public interface AsyncUserService {
+    void start();
+    void stop();
+    CompletableFuture<String> authenticate(String login, String password);
+    CompletableFuture<String> changeNick(String oldNick, String newNick);
+    CompletableFuture<Optional<User>> findUser(String login);
+}
@@ -2,11 +2,15 @@ package ru.gb.may_chat.server.service;
 
 import ru.gb.may_chat.server.model.User;
 
+import java.util.Optional;
+
 public interface UserService {
     void start();
     void stop();
     String authenticate(String login, String password);
     String changeNick(String oldNick, String newNick);
+    boolean isNickExists(String nick);
+    Optional<User> findUser(String login);
     User createUser(String login, String password, String nick);
     void deleteUser(String login, String password);
     void changePassword(String login, String oldPassword, String newPassword);
@@ -0,0 +1,95 @@
+package ru.gb.may_chat.server.service.impl;
+
+import ru.gb.may_chat.server.error.ServerBusyException;
+import ru.gb.may_chat.server.metrics.LatencyHistogram;
+import ru.gb.may_chat.server.metrics.ServerMetrics;
+import ru.gb.may_chat.server.model.User;
+import ru.gb.may_chat.server.service.AsyncUserService;
+import ru.gb.may_chat.server.service.UserService;
+
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+public class BoundedAsyncUserService implements AsyncUserService {
+    private final UserService userService;
+    private final int workers;
+    private final int queueCapacity;
+    private final AtomicLong rejected = new AtomicLong();
+    private final LatencyHistogram latency = ServerMetrics.getInstance().getAuthLatency();
+
+    private ThreadPoolExecutor executor;
+
+    public BoundedAsyncUserService(UserService userService, int workers, int queueCapacity) {
+        this.userService = userService;
+        this.workers = workers;
+        this.queueCapacity = queueCapacity;
+    }
+
+    @Override
+    public void start() {
+        AtomicLong counter = new AtomicLong();
+        ThreadFactory factory = task -> {
+            Thread thread = new Thread(task, "auth-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        executor = new ThreadPoolExecutor(
+                workers, workers,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                factory,
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    @Override
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> authenticate(String login, String password) {
+        long start = System.nanoTime();
+        return submit(() -> userService.authenticate(login, password))
+                .whenComplete((nick, e) -> latency.recordSince(start));
+    }
+
+    @Override
+    public CompletableFuture<String> changeNick(String oldNick, String newNick) {
+        return submit(() -> userService.changeNick(oldNick, newNick));
+    }
+
+    @Override
+    public CompletableFuture<Optional<User>> findUser(String login) {
+        return submit(() -> userService.findUser(login));
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            long total = rejected.incrementAndGet();
+            if (Long.bitCount(total) == 1) {
+                System.out.println("User service queue is full, rejected requests: " + total);
+            }
+            return CompletableFuture.failedFuture(new ServerBusyException("Server is busy, try again later"));
+        }
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+}
@@ -0,0 +1,261 @@
+package ru.gb.may_chat.server.service.impl;
+
+import ru.gb.may_chat.server.error.NickAlreadyIsBusyException;
+import ru.gb.may_chat.server.metrics.ServerMetrics;
+import ru.gb.may_chat.server.model.User;
+import ru.gb.may_chat.server.service.UserService;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public class CachingUserService implements UserService {
+    private final UserService delegate;
+    private final int maxSize;
+    private final long ttl;
+    private final byte[] salt = new byte[16];
+
+    private final Object lock = new Object();
+    private final LinkedHashMap<String, CachedUser> byLogin;
+    private final Map<String, CachedUser> byNick = new HashMap<>();
+    private final Map<String, List<Load>> loads = new HashMap<>();
+
+    private final ServerMetrics metrics = ServerMetrics.getInstance();
+
+    public CachingUserService(UserService delegate, int maxSize, long ttl) {
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        new SecureRandom().nextBytes(salt);
+        this.byLogin = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+                if (size() > CachingUserService.this.maxSize) {
+                    byNick.remove(eldest.getValue().nick);
+                    metrics.userCacheEviction();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public void start() {
+        delegate.start();
+    }
+
+    @Override
+    public void stop() {
+        System.out.printf("User cache: hits=%d misses=%d hit rate=%.2f evictions=%d%n",
+                metrics.getUserCacheHits(), metrics.getUserCacheMisses(),
+                metrics.getUserCacheHitRate(), metrics.getUserCacheEvictions());
+        delegate.stop();
+    }
+
+    @Override
+    public String authenticate(String login, String password) {
+        byte[] digest = digest(password);
+        synchronized (lock) {
+            CachedUser cached = getByLogin(login);
+            if (cached != null && MessageDigest.isEqual(cached.passwordDigest, digest)) {
+                metrics.userCacheHit();
+                return cached.nick;
+            }
+        }
+        metrics.userCacheMiss();
+        Load load = startLoad(login);
+        String nick = null;
+        try {
+            nick = delegate.authenticate(login, password);
+            return nick;
+        } finally {
+            synchronized (lock) {
+                if (finishLoad(login, load) && nick != null) {
+                    CachedUser previous = getByLogin(login);
+                    User user = previous != null && previous.nick.equals(nick) ? previous.user : null;
+                    put(new CachedUser(login, digest, nick, user, System.currentTimeMillis() + ttl));
+                }
+            }
+        }
+    }
+
+    @Override
+    public String changeNick(String oldNick, String newNick) {
+        synchronized (lock) {
+            if (getByNick(newNick) != null) {
+                metrics.userCacheHit();
+                throw new NickAlreadyIsBusyException();
+            }
+        }
+        metrics.userCacheMiss();
+        String nick = delegate.changeNick(oldNick, newNick);
+        synchronized (lock) {
+            CachedUser cached = byNick.remove(oldNick);
+            if (cached != null) {
+                User user = cached.user != null ? new User(cached.login, cached.user.getPassword(), nick) : null;
+                put(new CachedUser(cached.login, cached.passwordDigest, nick, user, cached.expiresAt));
+            }
+        }
+        return nick;
+    }
+
+    @Override
+    public boolean isNickExists(String nick) {
+        synchronized (lock) {
+            if (getByNick(nick) != null) {
+                metrics.userCacheHit();
+                return true;
+            }
+        }
+        metrics.userCacheMiss();
+        return delegate.isNickExists(nick);
+    }
+
+    @Override
+    // session resumes look users up on every reconnect, so they are served from the cache as well
+    public Optional<User> findUser(String login) {
+        synchronized (lock) {
+            CachedUser cached = getByLogin(login);
+            if (cached != null && cached.user != null) {
+                metrics.userCacheHit();
+                return Optional.of(copy(cached.user));
+            }
+        }
+        metrics.userCacheMiss();
+        Load load = startLoad(login);
+        Optional<User> found = Optional.empty();
+        try {
+            found = delegate.findUser(login);
+            return found;
+        } finally {
+            synchronized (lock) {
+                if (finishLoad(login, load) && found.isPresent()) {
+                    User user = copy(found.get());
+                    CachedUser previous = getByLogin(login);
+                    if (previous != null && previous.nick.equals(user.getNick())) {
+                        put(new CachedUser(login, previous.passwordDigest, user.getNick(), user, previous.expiresAt));
+                    } else {
+                        put(new CachedUser(login, null, user.getNick(), user, System.currentTimeMillis() + ttl));
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public User createUser(String login, String password, String nick) {
+        return delegate.createUser(login, password, nick);
+    }
+
+    @Override
+    public void deleteUser(String login, String password) {
+        delegate.deleteUser(login, password);
+        invalidate(login);
+    }
+
+    @Override
+    public void changePassword(String login, String oldPassword, String newPassword) {
+        delegate.changePassword(login, oldPassword, newPassword);
+        invalidate(login);
+    }
+
+    // a load that started before the invalidation must not put the old credentials back
+    private Load startLoad(String login) {
+        Load load = new Load();
+        synchronized (lock) {
+            loads.computeIfAbsent(login, key -> new ArrayList<>()).add(load);
+        }
+        return load;
+    }
+
+    // called under the lock, so the result stays valid for the put that follows
+    private boolean finishLoad(String login, Load load) {
+        List<Load> pending = loads.get(login);
+        pending.remove(load);
+        if (pending.isEmpty()) {
+            loads.remove(login);
+        }
+        return !load.stale;
+    }
+
+    private void invalidate(String login) {
+        synchronized (lock) {
+            for (Load load : loads.getOrDefault(login, List.of())) {
+                load.stale = true;
+            }
+            CachedUser cached = byLogin.remove(login);
+            if (cached != null) {
+                byNick.remove(cached.nick);
+            }
+        }
+    }
+
+    private CachedUser getByLogin(String login) {
+        CachedUser cached = byLogin.get(login);
+        if (cached != null && cached.isExpired()) {
+            byLogin.remove(login);
+            byNick.remove(cached.nick);
+            return null;
+        }
+        return cached;
+    }
+
+    private CachedUser getByNick(String nick) {
+        CachedUser cached = byNick.get(nick);
+        return cached == null ? null : getByLogin(cached.login);
+    }
+
+    private void put(CachedUser user) {
+        CachedUser previous = byLogin.put(user.login, user);
+        if (previous != null) {
+            byNick.remove(previous.nick);
+        }
+        byNick.put(user.nick, user);
+    }
+
+    private static User copy(User user) {
+        return new User(user.getLogin(), user.getPassword(), user.getNick());
+    }
+
+    private byte[] digest(String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt);
+            return digest.digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Load {
+        private boolean stale;
+    }
+
+    private static class CachedUser {
+        private final String login;
+        private final byte[] passwordDigest;
+        private final String nick;
+        private final User user;
+        private final long expiresAt;
+
+        private CachedUser(String login, byte[] passwordDigest, String nick, User user, long expiresAt) {
+            this.login = login;
+            this.passwordDigest = passwordDigest;
+            this.nick = nick;
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+}
@@ -1,12 +1,14 @@
 package ru.gb.may_chat.server.service.impl;
 
 import ru.gb.may_chat.server.dao.UserDao;
+import ru.gb.may_chat.server.error.LoginAlreadyIsBusyException;
 import ru.gb.may_chat.server.error.NickAlreadyIsBusyException;
 import ru.gb.may_chat.server.error.WrongCredentialsException;
 import ru.gb.may_chat.server.model.User;
 import ru.gb.may_chat.server.service.UserService;
 
 import java.sql.SQLException;
+import java.util.Optional;
 
 public class DbUserServiceImpl implements UserService {
 
@@ -36,8 +38,6 @@ public class DbUserServiceImpl implements UserService {
 
     @Override
     public String authenticate(String login, String password) {
-        System.out.println("Auth log: " + login + " pass: " + password);
-
         try {
             return userDao.getNickByLoginAndPassword(login, password)
                     .orElseThrow(() -> new WrongCredentialsException("Wrong login or password"));
@@ -61,18 +61,65 @@ public class DbUserServiceImpl implements UserService {
         }
     }
 
+    @Override
+    public boolean isNickExists(String nick) {
+        try {
+            return userDao.isNickExists(nick);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RuntimeException("SQL Error", e);
+        }
+    }
+
+    @Override
+    public Optional<User> findUser(String login) {
+        try {
+            return userDao.findUserByLogin(login);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RuntimeException("SQL Error", e);
+        }
+    }
+
     @Override
     public User createUser(String login, String password, String nick) {
-        return null; //TODO
+        try {
+            if (userDao.isLoginExists(login)) {
+                throw new LoginAlreadyIsBusyException();
+            }
+            if (userDao.isNickExists(nick)) {
+                throw new NickAlreadyIsBusyException();
+            }
+            User user = new User(login, password, nick);
+            userDao.insertUser(user);
+            return user;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RuntimeException("SQL Error", e);
+        }
     }
 
     @Override
     public void deleteUser(String login, String password) {
-        //@TODO
+        try {
+            if (!userDao.deleteUser(login, password)) {
+                throw new WrongCredentialsException("Wrong login or password");
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RuntimeException("SQL Error", e);
+        }
     }
 
     @Override
     public void changePassword(String login, String oldPassword, String newPassword) {
-        //@TODO
+        try {
+            if (!userDao.updatePassword(login, oldPassword, newPassword)) {
+                throw new WrongCredentialsException("Wrong login or password");
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RuntimeException("SQL Error", e);
+        }
     }
 }
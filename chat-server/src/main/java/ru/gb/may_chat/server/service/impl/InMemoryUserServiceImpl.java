@@ -1,101 +1,239 @@
 package ru.gb.may_chat.server.service.impl;
 
+import ru.gb.may_chat.server.dao.UserSnapshotStore;
+import ru.gb.may_chat.server.error.LoginAlreadyIsBusyException;
 import ru.gb.may_chat.server.error.NickAlreadyIsBusyException;
 import ru.gb.may_chat.server.error.UserNotFoundException;
 import ru.gb.may_chat.server.error.WrongCredentialsException;
 import ru.gb.may_chat.server.model.User;
 import ru.gb.may_chat.server.service.UserService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class InMemoryUserServiceImpl implements UserService {
+    private static final long SNAPSHOT_STOP_TIMEOUT = 10000;
 
-    private List<User> users;
+    private final ConcurrentMap<String, User> usersByLogin = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> loginsByNick = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+
+    private final UserSnapshotStore store;
+    private final long snapshotInterval;
+    private ScheduledExecutorService snapshots;
 
     public InMemoryUserServiceImpl() {
-        this.users = new ArrayList<>();
+        this(null, 0);
+    }
+
+    public InMemoryUserServiceImpl(UserSnapshotStore store, long snapshotInterval) {
+        this.store = store;
+        this.snapshotInterval = snapshotInterval;
     }
 
     @Override
     public void start() {
-        users.addAll(List.of(
+        if (store == null) {
+            seed();
+        } else {
+            try {
+                boolean empty = store.isEmpty();
+                for (User user : store.load()) {
+                    index(user);
+                }
+                if (empty) {
+                    seed();
+                }
+                if (store.getJournalRecords() > 0) {
+                    snapshot();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to load users", e);
+            }
+            if (snapshotInterval > 0) {
+                snapshots = Executors.newSingleThreadScheduledExecutor(task -> {
+                    Thread thread = new Thread(task, "user-snapshot");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                snapshots.scheduleWithFixedDelay(
+                        this::snapshotIfChanged, snapshotInterval, snapshotInterval, TimeUnit.MILLISECONDS);
+            }
+        }
+        System.out.println("User service started, users: " + usersByLogin.size());
+    }
+
+    private void seed() {
+        for (User user : List.of(
                 new User("log1", "pass1", "nick1"),
                 new User("log2", "pass2", "nick2"),
                 new User("log3", "pass3", "nick3"),
                 new User("log4", "pass4", "nick4"),
                 new User("log5", "pass5", "nick5")
-        ));
-        System.out.println("User service started");
+        )) {
+            index(user);
+            journalPut(user);
+        }
+    }
+
+    private void index(User user) {
+        usersByLogin.put(user.getLogin(), user);
+        loginsByNick.put(user.getNick(), user.getLogin());
     }
 
     @Override
     public void stop() {
+        if (snapshots != null) {
+            // not shutdownNow: interrupting a running snapshot would close its file channel mid-write
+            snapshots.shutdown();
+            try {
+                if (!snapshots.awaitTermination(SNAPSHOT_STOP_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    System.err.println("Periodic user snapshot did not finish in time");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (store != null) {
+            try {
+                snapshot();
+                store.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
         System.out.println("User service stopped");
     }
 
-    @Override
-    public String authenticate(String login, String password) {
-        System.out.println("Auth log: " + login + " pass: " + password);
-        for (User user : users) {
-            if (login.equals(user.getLogin()) && password.equals(user.getPassword())) {
-//            if (Objects.equals(login, user.getLogin()) && Objects.equals(password, user.getPassword())) {
-                return user.getNick();
+    private void snapshotIfChanged() {
+        try {
+            if (store.getJournalRecords() > 0) {
+                snapshot();
             }
+        } catch (IOException e) {
+            e.printStackTrace();
         }
+    }
 
-        throw new WrongCredentialsException("Wrong login or password");
+    private void snapshot() throws IOException {
+        long started = System.currentTimeMillis();
+        store.snapshot(() -> new ArrayList<>(usersByLogin.values()));
+        System.out.println("User snapshot written in " + (System.currentTimeMillis() - started) + " ms");
     }
 
     @Override
-    public String changeNick(String oldNick, String newNick) {
-        if (isNickBusy(newNick)) {
-            throw new NickAlreadyIsBusyException();
+    public String authenticate(String login, String password) {
+        User user = usersByLogin.get(login);
+        if (user == null || !user.getPassword().equals(password)) {
+            throw new WrongCredentialsException("Wrong login or password");
         }
-        User user = findUserByNickname(oldNick);
-        user.setNick(newNick);
-        return newNick;
+        return user.getNick();
     }
 
-    private User findUserByNickname(String nickname) {
-        for (User user : users) {
-            if (user.getNick().equals(nickname)) {
-                return user;
+    @Override
+    public String changeNick(String oldNick, String newNick) {
+        String login = loginsByNick.get(oldNick);
+        if (login == null) {
+            throw new UserNotFoundException();
+        }
+        if (loginsByNick.putIfAbsent(newNick, login) != null) {
+            throw new NickAlreadyIsBusyException();
+        }
+        synchronized (writeLock) {
+            User user = usersByLogin.get(login);
+            if (user == null || !user.getNick().equals(oldNick)) {
+                loginsByNick.remove(newNick, login);
+                throw new UserNotFoundException();
             }
+            User renamed = new User(login, user.getPassword(), newNick);
+            usersByLogin.put(login, renamed);
+            loginsByNick.remove(oldNick, login);
+            journalPut(renamed);
         }
-        throw new UserNotFoundException();
+        return newNick;
     }
 
-    private User findUserByLogin(String login) {
-        for (User user : users) {
-            if (user.getLogin().equals(login)) {
-                return user;
-            }
-        }
-        throw new UserNotFoundException();
+    @Override
+    public boolean isNickExists(String nick) {
+        return loginsByNick.containsKey(nick);
     }
 
-    private boolean isNickBusy(String newNick) {
-        for (User user : users) {
-            if (user.getNick().equals(newNick)) {
-                return true;
-            }
-        }
-        return false;
+    @Override
+    public Optional<User> findUser(String login) {
+        return Optional.ofNullable(usersByLogin.get(login));
     }
 
     @Override
     public User createUser(String login, String password, String nick) {
-        return null; //TODO
+        if (loginsByNick.putIfAbsent(nick, login) != null) {
+            throw new NickAlreadyIsBusyException();
+        }
+        synchronized (writeLock) {
+            User user = new User(login, password, nick);
+            if (usersByLogin.putIfAbsent(login, user) != null) {
+                loginsByNick.remove(nick, login);
+                throw new LoginAlreadyIsBusyException();
+            }
+            journalPut(user);
+            return user;
+        }
     }
 
     @Override
     public void deleteUser(String login, String password) {
-        //@TODO
+        synchronized (writeLock) {
+            User user = checkCredentials(login, password);
+            usersByLogin.remove(login, user);
+            loginsByNick.remove(user.getNick(), login);
+            journalDelete(login);
+        }
     }
 
     @Override
     public void changePassword(String login, String oldPassword, String newPassword) {
-        //@TODO
+        synchronized (writeLock) {
+            User user = checkCredentials(login, oldPassword);
+            User updated = new User(login, newPassword, user.getNick());
+            usersByLogin.put(login, updated);
+            journalPut(updated);
+        }
+    }
+
+    private User checkCredentials(String login, String password) {
+        User user = usersByLogin.get(login);
+        if (user == null || !user.getPassword().equals(password)) {
+            throw new WrongCredentialsException("Wrong login or password");
+        }
+        return user;
+    }
+
+    private void journalPut(User user) {
+        if (store == null) {
+            return;
+        }
+        try {
+            store.put(user);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to journal user " + user.getLogin(), e);
+        }
+    }
+
+    private void journalDelete(String login) {
+        if (store == null) {
+            return;
+        }
+        try {
+            store.delete(login);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to journal user deletion " + login, e);
+        }
     }
 }
@@ -0,0 +1,58 @@
+package ru.gb.may_chat.server.session;
+
+import ru.gb.may_chat.server.Handler;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public class SessionRegistry {
+    private final ConcurrentMap<String, Handler> sessions = new ConcurrentHashMap<>();
+
+    public boolean register(String nick, Handler handler) {
+        return sessions.putIfAbsent(nick, handler) == null;
+    }
+
+    // onRegistered runs before the session becomes visible to handlers(), so anything it sends
+    // is queued ahead of the first fan-out to this session
+    public boolean register(String nick, Handler handler, Runnable onRegistered) {
+        return sessions.computeIfAbsent(nick, key -> {
+            onRegistered.run();
+            return handler;
+        }) == handler;
+    }
+
+    public boolean unregister(String nick, Handler handler) {
+        return nick != null && sessions.remove(nick, handler);
+    }
+
+    public boolean rename(String oldNick, String newNick, Handler handler) {
+        if (sessions.putIfAbsent(newNick, handler) != null) {
+            return false;
+        }
+        sessions.remove(oldNick, handler);
+        return true;
+    }
+
+    public Optional<Handler> find(String nick) {
+        return Optional.ofNullable(sessions.get(nick));
+    }
+
+    public boolean isOnline(String nick) {
+        return nick != null && sessions.containsKey(nick);
+    }
+
+    public Collection<Handler> handlers() {
+        return sessions.values();
+    }
+
+    public Set<String> nicks() {
+        return sessions.keySet();
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+}
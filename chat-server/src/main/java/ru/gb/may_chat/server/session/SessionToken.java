@@ -0,0 +1,31 @@
+package ru.gb.may_chat.server.session;
+
+public class SessionToken {
+    private final String login;
+    private final String nick;
+    private final String credentialStamp;
+    private final long expiresAt;
+
+    public SessionToken(String login, String nick, String credentialStamp, long expiresAt) {
+        this.login = login;
+        this.nick = nick;
+        this.credentialStamp = credentialStamp;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public String getNick() {
+        return nick;
+    }
+
+    public String getCredentialStamp() {
+        return credentialStamp;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -0,0 +1,130 @@
+package ru.gb.may_chat.server.session;
+
+import ru.gb.may_chat.server.model.User;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Optional;
+
+public class SessionTokenService {
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final String SEPARATOR = "\n";
+    private static final String STAMP_PREFIX = "credentials" + SEPARATOR;
+    private static final int STAMP_SIZE = 16;
+    private static final int GENERATED_SECRET_SIZE = 32;
+
+    private final SecretKeySpec key;
+    private final long ttl;
+    private final ThreadLocal<Mac> macs;
+
+    public SessionTokenService(byte[] secret, long ttl) {
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        this.ttl = ttl;
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    // tokens have to outlive a restart, so without a configured secret a generated one is kept on disk
+    public static SessionTokenService create(String secret, Path secretFile, long ttl) {
+        if (secret != null && !secret.isEmpty()) {
+            return new SessionTokenService(secret.getBytes(StandardCharsets.UTF_8), ttl);
+        }
+        try {
+            return new SessionTokenService(loadOrGenerateSecret(secretFile), ttl);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load session token secret from " + secretFile, e);
+        }
+    }
+
+    private static byte[] loadOrGenerateSecret(Path file) throws IOException {
+        if (Files.exists(file)) {
+            return Base64.getDecoder().decode(Files.readString(file, StandardCharsets.US_ASCII).trim());
+        }
+        byte[] secret = new byte[GENERATED_SECRET_SIZE];
+        new SecureRandom().nextBytes(secret);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(tmp, Base64.getEncoder().encodeToString(secret), StandardCharsets.US_ASCII);
+        try {
+            Files.setPosixFilePermissions(tmp, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException ignored) {
+        }
+        Files.move(tmp, file);
+        System.out.println("Generated session token secret in " + file.toAbsolutePath());
+        return secret;
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ties a token to the password it was issued under without putting anything guessable in it
+    public String credentialStamp(String password) {
+        byte[] stamp = sign((STAMP_PREFIX + password).getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(stamp, STAMP_SIZE));
+    }
+
+    public String issue(String login, String nick, String credentialStamp) {
+        long expiresAt = System.currentTimeMillis() + ttl;
+        byte[] payload = String.join(SEPARATOR, login, nick, credentialStamp, String.valueOf(expiresAt))
+                .getBytes(StandardCharsets.UTF_8);
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payload) + "." + encoder.encodeToString(sign(payload));
+    }
+
+    public Optional<SessionToken> verify(String token) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        int dot = token.indexOf('.');
+        if (dot < 0) {
+            return Optional.empty();
+        }
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            byte[] payload = decoder.decode(token.substring(0, dot));
+            byte[] signature = decoder.decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(sign(payload), signature)) {
+                return Optional.empty();
+            }
+            String[] parts = new String(payload, StandardCharsets.UTF_8).split(SEPARATOR, -1);
+            if (parts.length != 4) {
+                return Optional.empty();
+            }
+            long expiresAt = Long.parseLong(parts[3]);
+            if (System.currentTimeMillis() >= expiresAt) {
+                return Optional.empty();
+            }
+            return Optional.of(new SessionToken(parts[0], parts[1], parts[2], expiresAt));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    // a rename, password change or deletion since the token was issued revokes it
+    public boolean isCurrent(SessionToken token, User user) {
+        return user.getNick().equals(token.getNick())
+                && MessageDigest.isEqual(
+                        credentialStamp(user.getPassword()).getBytes(StandardCharsets.US_ASCII),
+                        token.getCredentialStamp().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private byte[] sign(byte[] payload) {
+        return macs.get().doFinal(payload);
+    }
+}
@@ -0,0 +1,56 @@
+package ru.gb.may_chat.server.timer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Timeout {
+    private static final int STATE_INIT = 0;
+    private static final int STATE_CANCELLED = 1;
+    private static final int STATE_EXPIRED = 2;
+
+    private final HashedWheelTimer timer;
+    private final Runnable task;
+    private final long deadline;
+    private final AtomicInteger state = new AtomicInteger(STATE_INIT);
+
+    long remainingRounds;
+    Timeout next;
+    Timeout prev;
+    HashedWheelTimer.Bucket bucket;
+
+    Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+        this.timer = timer;
+        this.task = task;
+        this.deadline = deadline;
+    }
+
+    public boolean cancel() {
+        if (!state.compareAndSet(STATE_INIT, STATE_CANCELLED)) {
+            return false;
+        }
+        timer.cancelled(this);
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return state.get() == STATE_CANCELLED;
+    }
+
+    public boolean isExpired() {
+        return state.get() == STATE_EXPIRED;
+    }
+
+    long getDeadline() {
+        return deadline;
+    }
+
+    void expire() {
+        if (!state.compareAndSet(STATE_INIT, STATE_EXPIRED)) {
+            return;
+        }
+        try {
+            task.run();
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+    }
+}